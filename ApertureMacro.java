@@ -0,0 +1,488 @@
+// ApertureMacro.java v1.0
+// Copyright (C) 2022 Erich S. Heinzle, a1039181@gmail.com
+//
+// compiles the body of an RS-274X %AM...*% aperture macro once, so that
+// each %ADD...*% which uses the macro only needs to substitute its
+// parameters and evaluate the compiled expressions
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful, but
+// WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+
+import java.util.ArrayList;
+
+// A macro body is a list of statements, each of which is either a
+// variable definition, i.e. $4=$1x0.75, or a primitive, i.e.
+// 21,1,$1,$2,0,0,45, made up of a primitive code and a list of
+// arithmetic expressions using +, -, x, /, parentheses and $n variables.
+// Instantiating the macro evaluates the statements in order, and turns
+// the primitives into circles and polygons relative to the flash point,
+// which the Plotter keeps for the D-code, so that repeated flashes don't
+// evaluate anything.
+
+public class ApertureMacro {
+
+  static final int COMMENT = 0;
+  static final int CIRCLE = 1;
+  static final int VECTOR_LINE = 2;
+  static final int OUTLINE = 4;
+  static final int POLYGON = 5;
+  static final int MOIRE = 6;
+  static final int THERMAL = 7;
+  static final int VECTOR_LINE_20 = 20;
+  static final int CENTER_LINE = 21;
+  static final int LOWER_LEFT_LINE = 22;
+
+  String name;
+  private ArrayList<Statement> statements = new ArrayList<Statement>();
+
+  // a circle or polygon of an instantiated macro, in gerber units
+  // relative to the flash point. Shapes with the exposure off clear
+  // whatever was drawn before them.
+  public static class Shape {
+    boolean exposure;
+    boolean circle;
+    double cx;
+    double cy;
+    double diameter;
+    double [] xs;
+    double [] ys;
+
+    double minX() {
+      if (circle) {
+        return cx - diameter/2;
+      }
+      return min(xs);
+    }
+
+    double maxX() {
+      if (circle) {
+        return cx + diameter/2;
+      }
+      return max(xs);
+    }
+
+    double minY() {
+      if (circle) {
+        return cy - diameter/2;
+      }
+      return min(ys);
+    }
+
+    double maxY() {
+      if (circle) {
+        return cy + diameter/2;
+      }
+      return max(ys);
+    }
+
+    private static double min(double [] values) {
+      double result = values[0];
+      for (int index = 1; index < values.length; index++) {
+        result = Math.min(result, values[index]);
+      }
+      return result;
+    }
+
+    private static double max(double [] values) {
+      double result = values[0];
+      for (int index = 1; index < values.length; index++) {
+        result = Math.max(result, values[index]);
+      }
+      return result;
+    }
+  }
+
+  public ApertureMacro(String name, ArrayList<String> body) {
+    this.name = name;
+    for (String statement : body) {
+      statement = statement.trim();
+      if (statement.length() == 0 || statement.startsWith("0")
+          && (statement.length() == 1 || statement.charAt(1) == ' '
+              || statement.charAt(1) == ',')) {
+        continue; // comment primitive
+      }
+      try {
+        statements.add(compile(statement));
+      } catch (IllegalArgumentException e) {
+        System.out.println("Aperture macro " + name + ": skipping "
+                           + statement + ", " + e.getMessage());
+      }
+    }
+  }
+
+  public ArrayList<Shape> instantiate(double [] params) {
+    double [] vars = new double[Math.max(params.length, variableCount()) + 1];
+    System.arraycopy(params, 0, vars, 1, params.length);
+    ArrayList<Shape> shapes = new ArrayList<Shape>();
+    for (Statement s : statements) {
+      if (s.variable > 0) {
+        vars[s.variable] = s.values[0].evaluate(vars);
+      } else {
+        double [] v = new double[s.values.length];
+        for (int index = 0; index < v.length; index++) {
+          v[index] = s.values[index].evaluate(vars);
+        }
+        addShapes(s.code, v, shapes);
+      }
+    }
+    return shapes;
+  }
+
+  private int variableCount() {
+    int count = 0;
+    for (Statement s : statements) {
+      count = Math.max(count, s.highestVariable);
+    }
+    return count;
+  }
+
+  //
+  // primitive modifiers, as per the gerber specification, with any
+  // rotation being about the macro origin
+  //
+  private void addShapes(int code, double [] v, ArrayList<Shape> shapes) {
+    switch (code) {
+    case CIRCLE: // exposure, diameter, centre x, centre y, rotation
+      shapes.add(circle(v[0] != 0, value(v, 1), value(v, 2), value(v, 3), value(v, 4)));
+      break;
+    case VECTOR_LINE:
+    case VECTOR_LINE_20: { // exposure, width, start x, y, end x, y, rotation
+      double width = value(v, 1);
+      double dx = value(v, 4) - value(v, 2);
+      double dy = value(v, 5) - value(v, 3);
+      double length = Math.sqrt(dx*dx + dy*dy);
+      double px = 0;
+      double py = width/2;
+      if (length > 0) {
+        px = -dy/length*width/2;
+        py = dx/length*width/2;
+      }
+      shapes.add(polygon(v[0] != 0,
+                         new double [] {value(v, 2) + px, value(v, 4) + px,
+                                        value(v, 4) - px, value(v, 2) - px},
+                         new double [] {value(v, 3) + py, value(v, 5) + py,
+                                        value(v, 5) - py, value(v, 3) - py},
+                         value(v, 6)));
+      break;
+    }
+    case CENTER_LINE: // exposure, width, height, centre x, y, rotation
+      shapes.add(rectangle(v[0] != 0, value(v, 1), value(v, 2),
+                           value(v, 3), value(v, 4), value(v, 5)));
+      break;
+    case LOWER_LEFT_LINE: // exposure, width, height, lower left x, y, rotation
+      shapes.add(rectangle(v[0] != 0, value(v, 1), value(v, 2),
+                           value(v, 3) + value(v, 1)/2,
+                           value(v, 4) + value(v, 2)/2, value(v, 5)));
+      break;
+    case OUTLINE: { // exposure, n, n + 1 points, rotation
+      double n = value(v, 1);
+      if (n < 1 || 2 + 2*(n + 1) > v.length) {
+        System.out.println("Aperture macro " + name + ": skipping outline of "
+                           + n + " vertices, with " + (v.length - 2)
+                           + " modifiers for its vertices and rotation");
+        break;
+      }
+      int count = (int)n + 1;
+      double [] xs = new double[count];
+      double [] ys = new double[count];
+      for (int index = 0; index < count; index++) {
+        xs[index] = value(v, 2 + 2*index);
+        ys[index] = value(v, 3 + 2*index);
+      }
+      shapes.add(polygon(v[0] != 0, xs, ys, value(v, 2 + 2*count)));
+      break;
+    }
+    case POLYGON: { // exposure, vertices, centre x, y, diameter, rotation
+      int count = Math.max(3, (int)value(v, 1));
+      double [] xs = new double[count];
+      double [] ys = new double[count];
+      for (int index = 0; index < count; index++) {
+        double angle = 2*Math.PI*index/count;
+        xs[index] = value(v, 2) + value(v, 4)/2*Math.cos(angle);
+        ys[index] = value(v, 3) + value(v, 4)/2*Math.sin(angle);
+      }
+      shapes.add(polygon(v[0] != 0, xs, ys, value(v, 5)));
+      break;
+    }
+    case MOIRE: { // centre x, y, outer diameter, ring thickness, gap,
+                  // ring count, crosshair thickness, length, rotation
+      double diameter = value(v, 2);
+      double rotation = value(v, 8);
+      for (int ring = 0; ring < (int)value(v, 5) && diameter > 0; ring++) {
+        shapes.add(circle(true, diameter, value(v, 0), value(v, 1), rotation));
+        double inner = diameter - 2*value(v, 3);
+        if (inner > 0) {
+          shapes.add(circle(false, inner, value(v, 0), value(v, 1), rotation));
+        }
+        diameter = inner - 2*value(v, 4);
+      }
+      shapes.add(rectangle(true, value(v, 7), value(v, 6),
+                           value(v, 0), value(v, 1), rotation));
+      shapes.add(rectangle(true, value(v, 6), value(v, 7),
+                           value(v, 0), value(v, 1), rotation));
+      break;
+    }
+    case THERMAL: { // centre x, y, outer diameter, inner diameter, gap, rotation
+      double rotation = value(v, 5);
+      shapes.add(circle(true, value(v, 2), value(v, 0), value(v, 1), rotation));
+      shapes.add(circle(false, value(v, 3), value(v, 0), value(v, 1), rotation));
+      shapes.add(rectangle(false, value(v, 2), value(v, 4),
+                           value(v, 0), value(v, 1), rotation));
+      shapes.add(rectangle(false, value(v, 4), value(v, 2),
+                           value(v, 0), value(v, 1), rotation));
+      break;
+    }
+    default:
+      System.out.println("Aperture macro " + name
+                         + ": unsupported primitive " + code);
+    }
+  }
+
+  private static double value(double [] v, int index) {
+    if (index < v.length) {
+      return v[index];
+    }
+    return 0.0;
+  }
+
+  private static Shape circle(boolean exposure, double diameter,
+                              double cx, double cy, double rotation) {
+    Shape s = new Shape();
+    s.exposure = exposure;
+    s.circle = true;
+    s.diameter = diameter;
+    double radians = rotation*Math.PI/180;
+    s.cx = cx*Math.cos(radians) - cy*Math.sin(radians);
+    s.cy = cx*Math.sin(radians) + cy*Math.cos(radians);
+    return s;
+  }
+
+  private static Shape rectangle(boolean exposure, double width, double height,
+                                 double cx, double cy, double rotation) {
+    return polygon(exposure,
+                   new double [] {cx - width/2, cx + width/2,
+                                  cx + width/2, cx - width/2},
+                   new double [] {cy - height/2, cy - height/2,
+                                  cy + height/2, cy + height/2},
+                   rotation);
+  }
+
+  private static Shape polygon(boolean exposure, double [] xs, double [] ys,
+                               double rotation) {
+    Shape s = new Shape();
+    s.exposure = exposure;
+    double radians = rotation*Math.PI/180;
+    double cos = Math.cos(radians);
+    double sin = Math.sin(radians);
+    s.xs = new double[xs.length];
+    s.ys = new double[ys.length];
+    for (int index = 0; index < xs.length; index++) {
+      s.xs[index] = xs[index]*cos - ys[index]*sin;
+      s.ys[index] = xs[index]*sin + ys[index]*cos;
+    }
+    return s;
+  }
+
+  //
+  // The compiled statements. A variable definition has variable > 0
+  // and a single value, a primitive has its code and modifiers.
+  //
+  private static class Statement {
+    int variable = 0;
+    int code;
+    Expression [] values;
+    int highestVariable = 0;
+  }
+
+  private Statement compile(String statement) {
+    Statement s = new Statement();
+    if (statement.startsWith("$")) {
+      int equals = statement.indexOf('=');
+      if (equals == -1) {
+        throw new IllegalArgumentException("missing =");
+      }
+      s.variable = variableNumber(statement.substring(1, equals));
+      s.values = new Expression [] {parse(statement.substring(equals + 1), s)};
+      s.highestVariable = Math.max(s.highestVariable, s.variable);
+      return s;
+    }
+    String [] fields = statement.split(",");
+    try {
+      s.code = Integer.parseInt(fields[0].trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("unknown primitive");
+    }
+    s.values = new Expression[fields.length - 1];
+    for (int index = 1; index < fields.length; index++) {
+      s.values[index - 1] = parse(fields[index], s);
+    }
+    if (s.values.length == 0) {
+      throw new IllegalArgumentException("no modifiers");
+    }
+    return s;
+  }
+
+  private static int variableNumber(String digits) {
+    try {
+      int number = Integer.parseInt(digits.trim());
+      if (number > 0) {
+        return number;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("bad variable $" + digits);
+  }
+
+  //
+  // The expressions are parsed by recursive descent into a small tree,
+  // with the usual precedence of x and / over + and -.
+  //
+  private static abstract class Expression {
+    abstract double evaluate(double [] vars);
+  }
+
+  private static class Constant extends Expression {
+    double value;
+    Constant(double value) {
+      this.value = value;
+    }
+    double evaluate(double [] vars) {
+      return value;
+    }
+  }
+
+  private static class Variable extends Expression {
+    int number;
+    Variable(int number) {
+      this.number = number;
+    }
+    double evaluate(double [] vars) {
+      return vars[number];
+    }
+  }
+
+  private static class Negation extends Expression {
+    Expression operand;
+    Negation(Expression operand) {
+      this.operand = operand;
+    }
+    double evaluate(double [] vars) {
+      return -operand.evaluate(vars);
+    }
+  }
+
+  private static class Operation extends Expression {
+    char operator;
+    Expression left;
+    Expression right;
+    Operation(char operator, Expression left, Expression right) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+    double evaluate(double [] vars) {
+      double l = left.evaluate(vars);
+      double r = right.evaluate(vars);
+      switch (operator) {
+      case '+':
+        return l + r;
+      case '-':
+        return l - r;
+      case 'x':
+        return l*r;
+      default:
+        return (r == 0) ? 0 : l/r;
+      }
+    }
+  }
+
+  // the text being parsed, and where we are up to
+  private String text;
+  private int index;
+
+  private Expression parse(String expression, Statement s) {
+    text = expression.replace(" ", "").replace('X', 'x');
+    index = 0;
+    Expression e = sum(s);
+    if (index != text.length()) {
+      throw new IllegalArgumentException("unexpected " + text.substring(index));
+    }
+    return e;
+  }
+
+  private Expression sum(Statement s) {
+    Expression e = product(s);
+    while (index < text.length()
+           && (text.charAt(index) == '+' || text.charAt(index) == '-')) {
+      char operator = text.charAt(index++);
+      e = new Operation(operator, e, product(s));
+    }
+    return e;
+  }
+
+  private Expression product(Statement s) {
+    Expression e = factor(s);
+    while (index < text.length()
+           && (text.charAt(index) == 'x' || text.charAt(index) == '/')) {
+      char operator = text.charAt(index++);
+      e = new Operation(operator, e, factor(s));
+    }
+    return e;
+  }
+
+  private Expression factor(Statement s) {
+    if (index == text.length()) {
+      throw new IllegalArgumentException("missing value");
+    }
+    char c = text.charAt(index);
+    if (c == '-') {
+      index++;
+      return new Negation(factor(s));
+    }
+    if (c == '+') {
+      index++;
+      return factor(s);
+    }
+    if (c == '(') {
+      index++;
+      Expression e = sum(s);
+      if (index == text.length() || text.charAt(index) != ')') {
+        throw new IllegalArgumentException("missing )");
+      }
+      index++;
+      return e;
+    }
+    int start = index;
+    if (c == '$') {
+      index++;
+      while (index < text.length() && Character.isDigit(text.charAt(index))) {
+        index++;
+      }
+      int number = variableNumber(text.substring(start + 1, index));
+      s.highestVariable = Math.max(s.highestVariable, number);
+      return new Variable(number);
+    }
+    while (index < text.length()
+           && (Character.isDigit(text.charAt(index)) || text.charAt(index) == '.')) {
+      index++;
+    }
+    try {
+      return new Constant(Double.parseDouble(text.substring(start, index)));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("unexpected " + text.substring(start));
+    }
+  }
+
+}
@@ -63,6 +63,9 @@ public class Arc extends FootprintElementArchetype
   // which is 0.01 inches, which is 10 mil = 10 thou
   long lineThicknessNm = defaultLineThicknessNm;
   boolean reverseDirection = false;
+  // only an element moved by a gerber job is routed to the bottom
+  // copper and mask layers, other conversions keep their layers
+  boolean layerMoved = false;
 
   String kicadArcDescriptor = "";
 
@@ -491,8 +494,8 @@ public class Arc extends FootprintElementArchetype
     return points;
   }
   
-  public String lihataArc(long xOffset, long yOffset, float magnificationRatio) {
-    return "      ha:arc." + arcCount++ + " {\n" +
+  public String lihataArc(long xOffset, long yOffset, float magnificationRatio, ConversionContext context) {
+    return "      ha:arc." + context.arcCount++ + " {\n" +
 	"       clearance = 0.0\n" +
 	"       astart = " + gEDAstartAngle + "\n" +
 	"       thickness = " + lineThicknessNm + "nm\n" +
@@ -504,12 +507,12 @@ public class Arc extends FootprintElementArchetype
 	"       ha:attributes {\n       }\n       ha:flags {\n       }\n      }\n";
   }
 
-  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format)
+  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format, ConversionContext context)
   {
     if (format.equals("pcb")) {
       return generateGEDAelement(xOffset, yOffset, magnificationRatio);
     } else {
-      return lihataArc(xOffset, yOffset, magnificationRatio);
+      return lihataArc(xOffset, yOffset, magnificationRatio, context);
     }
   }
 
@@ -558,6 +561,11 @@ public class Arc extends FootprintElementArchetype
     return output;
   }
 
+  public void addPreviewShapes(FootprintPreview preview) {
+    preview.arc(this, xCoordNm, yCoordNm, radiusNm, gEDAstartAngle,
+                gEDAdeltaAngle, lineThicknessNm);
+  }
+
   public boolean isTop() {
     return kicadLayer == 21;
   }
@@ -566,4 +574,25 @@ public class Arc extends FootprintElementArchetype
     return kicadLayer == 15;
   }
 
+  public boolean isBottom() {
+    return layerMoved && kicadLayer == 20;
+  }
+
+  public boolean isBottomCopper() {
+    return layerMoved && kicadLayer == 0;
+  }
+
+  public boolean isTopMask() {
+    return layerMoved && kicadLayer == 23;
+  }
+
+  public boolean isBottomMask() {
+    return layerMoved && kicadLayer == 22;
+  }
+
+  public void setKicadLayer(int layer) {
+    kicadLayer = layer;
+    layerMoved = true;
+  }
+
 }
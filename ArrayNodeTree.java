@@ -0,0 +1,145 @@
+// BXLDecoder.java - a utility for converting Huffman encoded files
+// into text, ported to Java from the vala code by Geert Jordaens
+//
+// ArrayNodeTree.java - a flat array version of the NodeTree used for
+// the Huffman decoding, which avoids chasing Node object pointers
+//
+// BXLDecoder.java v1.0
+// ArrayNodeTree.java v1.0
+// Copyright (C) 2016,2022 Erich S. Heinzle, a1039181@gmail.com
+
+//    see LICENSE-gpl-v2.txt for software license
+//    see README.txt
+//
+//    This program is free software; you can redistribute it and/or
+//    modify it under the terms of the GNU General Public License
+//    as published by the Free Software Foundation; either version 2
+//    of the License, or (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program; if not, write to the Free Software
+//    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+//
+//    BXLDecoder Copyright (C) 2016 Erich S. Heinzle a1039181@gmail.com
+
+// NodeTree builds a complete tree of depth 8, filling right branches
+// before left branches, so that leaf symbols 0..255 are allocated in
+// depth first order. This is the same layout as a binary heap, where
+// node n has its right child at 2n+1 and its left child at 2n+2, which
+// lets us set up the arrays without any Node objects at all.
+// A read bit of 0 picks the right child, and a 1 picks the left child.
+//
+// The update rule is a direct port of NodeTree.update_tree(), including
+// the fact that internal node weights are only refreshed when a swap
+// takes place, so that decoded output is byte identical.
+
+public class ArrayNodeTree {
+
+  public static final int ROOT = 0;
+  public static final int NONE = -1;
+  static final int LEAF_COUNT = 256;
+  static final int NODE_COUNT = 2*LEAF_COUNT - 1;
+  public static final int FIRST_LEAF = NODE_COUNT - LEAF_COUNT;
+
+  // child[2n] is the right child of node n, child[2n+1] the left child
+  public final int [] parent = new int[NODE_COUNT];
+  public final int [] child = new int[2*NODE_COUNT];
+  public final int [] weight = new int[NODE_COUNT];
+  public final int [] symbol = new int[NODE_COUNT];
+
+  // explicit stack replacing the recursion in NodeTree.update_tree()
+  private int [] pending = new int[64];
+
+  public ArrayNodeTree() {
+    parent[ROOT] = NONE;
+    for (int n = 0; n < NODE_COUNT; n++) {
+      if (n < FIRST_LEAF) {
+        child[2*n] = 2*n + 1;
+        child[2*n + 1] = 2*n + 2;
+        parent[2*n + 1] = n;
+        parent[2*n + 2] = n;
+        symbol[n] = NONE;
+      } else {
+        child[2*n] = NONE;
+        child[2*n + 1] = NONE;
+        symbol[n] = n - FIRST_LEAF;
+      }
+    }
+  }
+
+  // leaves are moved around the tree, but keep their node index,
+  // so a leaf can be recognised without looking anything up
+  public int leafFor(int sym) {
+    return FIRST_LEAF + sym;
+  }
+
+  public boolean isLeaf(int node) {
+    return node >= FIRST_LEAF;
+  }
+
+  // bit != 0 picks the left child, as per SourceBuffer.decode()
+  public int child(int node, int bit) {
+    return child[2*node + (bit != 0 ? 1 : 0)];
+  }
+
+  private int sibling(int node, int of) {
+    if (of != child[2*node]) {
+      return child[2*node];
+    } else {
+      return child[2*node + 1];
+    }
+  }
+
+  private boolean needSwapping(int node) {
+    int p = parent[node];
+    return (p != NONE &&
+            parent[p] != NONE && // root node
+            weight[node] > weight[p]);
+  }
+
+  private void swap(int n1, int n2, int n3) {
+    if (n3 != NONE)           { parent[n3] = n1; }
+    if (child[2*n1] == n2)     { child[2*n1] = n3; return; }
+    if (child[2*n1 + 1] == n2) { child[2*n1 + 1] = n3; }
+  }
+
+  // increments the leaf's weight and then rebalances the tree
+  public void update(int leaf) {
+    weight[leaf]++;
+    if (!needSwapping(leaf)) { // the usual case
+      return;
+    }
+    int top = 0;
+    pending[top++] = leaf;
+    while (top > 0) {
+      int current = pending[--top];
+      if (!needSwapping(current)) {
+        continue;
+      }
+      int p = parent[current];
+      int grandParent = parent[p];
+      int parentSibling = sibling(grandParent, p);
+      swap(grandParent, p, current);
+      swap(grandParent, parentSibling, p);
+      swap(p, current, parentSibling);
+      weight[p] = weight[child[2*p]] + weight[child[2*p + 1]];
+      weight[grandParent] = weight[current] + weight[p];
+      if (top + 3 > pending.length) {
+        int [] newPending = new int[pending.length*2];
+        System.arraycopy(pending, 0, newPending, 0, top);
+        pending = newPending;
+      }
+      // pushed in reverse, so the parent is revisited first, then
+      // the grandparent, then current, as in NodeTree.update_tree()
+      pending[top++] = current;
+      pending[top++] = grandParent;
+      pending[top++] = p;
+    }
+  }
+
+}
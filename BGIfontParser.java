@@ -35,23 +35,24 @@ import java.util.Scanner;
 
 class BGIfontParser extends CADParser {
 
-  private static boolean verbose = false;
+  private boolean verbose = false;
 
-  private static String filenameOrig = "";
+  private String filenameOrig = "";
 
-  public BGIfontParser(String filename, boolean verbose) {
+  public BGIfontParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File BGIFile = new File(filename);
     filenameOrig = filename;
     if (!BGIFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting format: " + fpFormat);
+      System.out.println("Parsing: " + filename + " and exporting format: " + context.fpFormat);
     }
     this.verbose = verbose;
   }
 
   // BGI files provide stroked font information in a plotter-esque binary format
-  public static String [] convert(String BGIData) throws IOException {
+  public String [] convert(String BGIData) throws IOException {
     File BGIDefs = new File(BGIData);
     SourceBuffer BGIFonts = new SourceBuffer(BGIData);
     String newElement = "";
@@ -85,7 +86,7 @@ class BGIfontParser extends CADParser {
       System.out.println("Symbol defs:\n" + fontData);
       break;
     }
-    elementWrite(filenameOrig + ".font", fontData);
+    elementWrite(context.outputDir + filenameOrig + ".font", fontData);
     String [] returnedFilename = {filenameOrig};
     return returnedFilename;
   }
@@ -31,19 +31,20 @@ import java.util.Scanner;
 
 class BSDLParser extends CADParser {
 
-  public BSDLParser(String filename, boolean verbose) {
+  public BSDLParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File symDefFile = new File(filename);
     if (!symDefFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting format: " + symFormat);
+      System.out.println("Parsing: " + filename + " and exporting format: " + context.symFormat);
     }
   }
 
   // BSDL files provide pin mapping suitable for symbol generation
   // but do not provide package/footprint information
 
-  public static String [] convert(String BSDLFile) throws IOException {
+  public String [] convert(String BSDLFile) throws IOException {
     File inputBSDL = new File(BSDLFile);
     Scanner textBSDL = new Scanner(inputBSDL);
     String currentLine = "";
@@ -84,7 +85,7 @@ class BSDLParser extends CADParser {
               if ((currentLine.length() != 0) ) {
                 //                  && !currentLine.equals(" ") ) {
                 SymbolPin latestPin = new SymbolPin();
-                latestPin.populateBSDLElement(currentLine, symFormat);
+                latestPin.populateBSDLElement(currentLine, context);
                 pins.addPin(latestPin);
                 if (currentLine.endsWith(";")) {
                   lastLine = true;
@@ -108,7 +109,7 @@ class BSDLParser extends CADParser {
         
         pins.setBSDPinType(portPinDef.toArray(new String[portPinDef.size()]));
 
-        PinList newPinList = pins.createDILSymbol(symFormat);
+        PinList newPinList = pins.createDILSymbol(context.symFormat);
         // with a pin list, we can now calculate text label positions
         long textRHSOffset = newPinList.textRHS();
         yOffset = newPinList.minY();// to justify the symbol in gschem 
@@ -116,21 +117,21 @@ class BSDLParser extends CADParser {
         newSymbol = "v 20110115 1";
         // next some attributes
         symAttributes = symAttributes
-            + SymbolText.BXLAttributeString(textRHSOffset, 0, "footprint=" + FPName)
-            + SymbolText.BXLAttributeString(textRHSOffset, 0, "refdes=U?")
-            + SymbolText.BXLAttributeString(textRHSOffset, 0, "documentation=" + BSDLFile);
+            + SymbolText.BXLAttributeString(context, textRHSOffset, 0, "footprint=" + FPName)
+            + SymbolText.BXLAttributeString(context, textRHSOffset, 0, "refdes=U?")
+            + SymbolText.BXLAttributeString(context, textRHSOffset, 0, "documentation=" + BSDLFile);
 
         // we now build the symbol
         elData = newSymbol   // we now add pins to the...
-            + newPinList.toString(xOffset,yOffset, symFormat)
+            + newPinList.toString(xOffset,yOffset, context)
             //... header, and then
             + "\n"
-            + newPinList.calculatedBoundingBox(0,0).toString(0,yOffset,symFormat)
+            + newPinList.calculatedBoundingBox(0,0).toString(0,yOffset,context.symFormat)
             + symAttributes;
         elName = symName + ".sym";
 
         // we now write the element to a file
-        elementWrite(elName, elData);
+        elementWrite(context.outputDir + elName, elData);
         convertedFiles.add(elName);
 
         symAttributes = ""; // reset symbol data if batch processing
@@ -0,0 +1,169 @@
+// BXLDecodeBenchmark.java - a microbenchmark for the BXL Huffman decoder
+//
+// generates a large synthetic BXL file, encoded with the same adaptive
+// Huffman model the decoder uses, and then reports decoding throughput
+// for the original Node based decoder and the array based decoder
+//
+// usage:
+//
+//	java BXLDecodeBenchmark [megabytes] [repeats]
+//
+// BXLDecodeBenchmark.java v1.0
+// Copyright (C) 2022 Erich S. Heinzle, a1039181@gmail.com
+
+//    see LICENSE-gpl-v2.txt for software license
+//    see README.txt
+//
+//    This program is free software; you can redistribute it and/or
+//    modify it under the terms of the GNU General Public License
+//    as published by the Free Software Foundation; either version 2
+//    of the License, or (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program; if not, write to the Free Software
+//    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+//
+//    BXLDecodeBenchmark Copyright (C) 2022 Erich S. Heinzle a1039181@gmail.com
+
+import java.io.*;
+import java.util.Random;
+
+public class BXLDecodeBenchmark {
+
+  public static void main(String [] args) throws IOException {
+    int megabytes = 16;
+    int repeats = 3;
+    if (args.length > 0) {
+      megabytes = Integer.parseInt(args[0]);
+    }
+    if (args.length > 1) {
+      repeats = Integer.parseInt(args[1]);
+    }
+
+    String text = syntheticBXL(megabytes*1024*1024);
+    File BXLFile = File.createTempFile("benchmark", ".bxl");
+    BXLFile.deleteOnExit();
+    FileOutputStream output = new FileOutputStream(BXLFile);
+    output.write(encode(text));
+    output.close();
+    System.out.println("Synthetic BXL: " + text.length() + " bytes decoded, "
+                       + BXLFile.length() + " bytes encoded");
+
+    String reference = null;
+    for (int run = 0; run < repeats; run++) {
+      for (int pass = 0; pass < 2; pass++) {
+        boolean legacy = (pass == 0);
+        SourceBuffer buffer = new SourceBuffer(BXLFile.getPath());
+        long start = System.nanoTime();
+        String decoded = legacy ? buffer.decodeWithNodeTree() : buffer.decode();
+        long elapsed = System.nanoTime() - start;
+        if (reference == null) {
+          reference = decoded;
+        } else if (!reference.equals(decoded)) {
+          System.out.println("Decoder outputs differ!");
+          System.exit(1);
+        }
+        double MBperSecond = (decoded.length()/(1024.0*1024.0))/(elapsed/1.0e9);
+        System.out.println("Run " + (run + 1)
+                           + (legacy ? " Node tree, bit at a time:  " :
+                              " array tree, bit register: ")
+                           + String.format("%8.2f MB/s", MBperSecond));
+      }
+    }
+    if (!text.equals(reference)) {
+      System.out.println("Decoded text does not match synthetic BXL!");
+      System.exit(1);
+    }
+  }
+
+  // a repetitive mix of BXL statements, close enough to vendor
+  // libraries for the purposes of exercising the Huffman decoder
+  private static String syntheticBXL(int size) {
+    Random rand = new Random(1);
+    StringBuilder sb = new StringBuilder(size + 256);
+    int count = 0;
+    while (sb.length() < size) {
+      sb.append("PadStack \"P").append(count).append("\" (HoleDiam ")
+          .append(rand.nextInt(40)).append(") (Surface True) (Plated True) (NoPaste False)\n");
+      sb.append("\tShapes:1\n\tPadShape (Width ").append(rand.nextInt(100))
+          .append(") (Height ").append(rand.nextInt(100))
+          .append(") (PadType 0) (Layer TOP)\nEndPadStack\n");
+      sb.append("Pattern \"FP").append(count).append("\"\n");
+      for (int pad = 0; pad < 16; pad++) {
+        sb.append("\tPad (Number ").append(pad + 1).append(") (PinName \"")
+            .append(pad + 1).append("\") (PadStyle \"P").append(count)
+            .append("\") (OriginalPadStyle \"P").append(count)
+            .append("\") (Origin ").append(rand.nextInt(1000)).append(", ")
+            .append(rand.nextInt(1000)).append(") (OriginalPinNumber ")
+            .append(pad + 1).append(") (Rotate 0)\n");
+      }
+      sb.append("\tLine (Layer TOP_SILKSCREEN) (Origin ").append(rand.nextInt(500))
+          .append(", ").append(rand.nextInt(500)).append(") (EndPoint ")
+          .append(rand.nextInt(500)).append(", ").append(rand.nextInt(500))
+          .append(") (Width 10)\nEndPattern\n");
+      count++;
+    }
+    sb.setLength(size);
+    return sb.toString();
+  }
+
+  // encodes the text with the adaptive Huffman model of ArrayNodeTree,
+  // preceded by the four byte, bit reversed, uncompressed size
+  private static byte [] encode(String text) {
+    ArrayNodeTree tree = new ArrayNodeTree();
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream(text.length());
+    int length = text.length();
+    int mask = 0;
+    for (int index = 0; index < 4; index++) {
+      int sizeByte = 0;
+      for (int i = 7 ; i >= 0 ; i--) {
+        if ((length & (1 << mask)) != 0) {
+          sizeByte |= (1 << i);
+        }
+        mask++;
+      }
+      encoded.write(sizeByte);
+    }
+    int [] path = new int[ArrayNodeTree.NODE_COUNT];
+    int current = 0;
+    int bitCount = 0;
+    boolean leadingBit = true; // the decoder supplies this 0 bit itself
+    for (int index = 0; index < length; index++) {
+      int node = tree.leafFor(text.charAt(index) & 0xff);
+      int depth = 0;
+      while (tree.parent[node] != ArrayNodeTree.NONE) {
+        int parent = tree.parent[node];
+        path[depth++] = (tree.child[2*parent + 1] == node) ? 1 : 0;
+        node = parent;
+      }
+      while (depth > 0) {
+        if (leadingBit) {
+          depth--;
+          leadingBit = false;
+          continue;
+        }
+        current = (current << 1) | path[--depth];
+        bitCount++;
+        if (bitCount == 8) {
+          encoded.write(current);
+          current = 0;
+          bitCount = 0;
+        }
+      }
+      tree.update(tree.leafFor(text.charAt(index) & 0xff));
+    }
+    if (bitCount > 0) {
+      encoded.write(current << (8 - bitCount));
+    }
+    // SourceBuffer.decode() stops once the last byte has been started,
+    // so a trailing pad byte ensures the final symbols are decoded
+    encoded.write(0);
+    return encoded.toByteArray();
+  }
+
+}
@@ -36,27 +36,29 @@ import java.util.Scanner;
 
 class BXLParser extends CADParser {
 
-  private static boolean verbose = false;
+  private boolean verbose = false;
 
   static float magnificationRatio = 1.0f;
   static String exportPath = "Converted/";
   
-  public BXLParser(String filename, boolean verbose) {
+  public BXLParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File BXLFile = new File(filename);
     if (!BXLFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting formats: " + fpFormat + ", " + symFormat);
+      System.out.println("Parsing: " + filename + " and exporting formats: " + context.fpFormat + ", " + context.symFormat);
     }
     this.verbose = verbose;
   }
 
   // BXL files provide both pin mapping suitable for symbol
   // generation as well as package/footprint information
-  public static String [] convert(String BXLFile) throws IOException {
+  public String [] convert(String BXLFile) throws IOException {
 
     SourceBuffer buffer = new SourceBuffer(BXLFile); 
-    Scanner textBXL = new Scanner(buffer.decode());
+    // the text is decoded as the Scanner asks for it
+    Scanner textBXL = new Scanner(buffer.decodingReader());
 
     String currentLine = "";
     String newElement = "";
@@ -160,16 +162,16 @@ class BXLParser extends CADParser {
             SymbolPolyline symbolLine = new SymbolPolyline();
             symbolLine.populateBXLElement(feature);
             newElement = newElement
-                + "\n" + symbolLine.toString(0,-yOffset,symFormat);
+                + "\n" + symbolLine.toString(0,-yOffset,context.symFormat);
           } 
         }
 
         for (String attr : attributeFields) {
           symAttributes = symAttributes
-              + SymbolText.BXLAttributeString(textXOffset, 0, attr);
+              + SymbolText.BXLAttributeString(context, textXOffset, 0, attr);
         }
 
-        newSymbol = symbolHeader(symFormat)
+        newSymbol = symbolHeader(context.symFormat)
             + newElement; // we have created the header for the symbol
         newElement = "";
         silkFeatures.clear();
@@ -188,25 +190,25 @@ class BXLParser extends CADParser {
             //SymbolText attrText = new SymbolText();
             //attrText.populateBXLElement(currentLine);
             symAttributes = symAttributes
-                + SymbolText.BXLAttributeString(textXOffset, 0, currentLine);
+                + SymbolText.BXLAttributeString(context, textXOffset, 0, currentLine);
           } else if (currentLine.startsWith("RefDesPrefix")) {
             currentLine = currentLine.replaceAll(" ", "");
             currentLine = currentLine.split("\"")[1];
             String refDesAttr = "refdes=" + currentLine + "?";
             symAttributes = symAttributes
-                + SymbolText.BXLAttributeString(textXOffset, 0, refDesAttr);
+                + SymbolText.BXLAttributeString(context, textXOffset, 0, refDesAttr);
           } else if (currentLine.startsWith("PatternName")) {
             currentLine = currentLine.replaceAll(" ", "");
             currentLine = currentLine.split("\"")[1];
             String FPAttr = "footprint=" + currentLine;
             symAttributes = symAttributes
-                + SymbolText.BXLAttributeString(textXOffset, 0, FPAttr);
+                + SymbolText.BXLAttributeString(context, textXOffset, 0, FPAttr);
           } else if (currentLine.startsWith("AlternatePattern")) {
             currentLine = currentLine.replaceAll(" ", "");
             currentLine = currentLine.split("\"")[1];
             String AltFPAttr = "alt-footprint=" + currentLine;
             symAttributes = symAttributes
-                + SymbolText.BXLAttributeString(textXOffset, 0, AltFPAttr);
+                + SymbolText.BXLAttributeString(context, textXOffset, 0, AltFPAttr);
           } else if (currentLine.startsWith("CompPin ")) {
             pins.setBXLPinType(currentLine);
           }
@@ -215,11 +217,11 @@ class BXLParser extends CADParser {
         // we can now put the pieces of the BXL defined symbol together
         elName = symbolName + ".sym";
         elData = newSymbol   // we now add pins to the
-            + pins.toString(0,-yOffset, symFormat) // the header, and then
+            + pins.toString(0,-yOffset, context) // the header, and then
             + symAttributes; // the final attributes
 
         // we now write the element to a file
-        elementWrite(elName, elData);
+        elementWrite(context.outputDir + elName, elData);
         // add the symbol to our list of converted elements
         convertedFiles.add(elName);
         // and we rest the variable for the next symbol
@@ -228,7 +230,7 @@ class BXLParser extends CADParser {
     }
 
     List<String> footprintsExported
-        = Arrays.asList(Footprint.exportFootprints(BXLFile, footprints, fpFormat,
+        = Arrays.asList(Footprint.exportFootprints(BXLFile, footprints, context,
                                                    magnificationRatio, exportPath,
                                                    true, verbose));
     convertedFiles.addAll(footprintsExported);    
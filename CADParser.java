@@ -36,41 +36,9 @@ import java.util.Scanner;
 class CADParser {
 
   static String theFile = null;
-  static Integer pinSpacing = 20;
-  static String symFormat = "xschem";
-  static String fpFormat = "pcb-rnd";
 
-  public static void setFormat(String format) {
-    setSymFormat(format);
-    setFPFormat(format);
-  }
-  
-  public static void setSymFormat(String format) {
-    if (format.equals("gschem") || format.equals("gEDA")) {
-      symFormat = "gschem";
-      pinSpacing = 200;
-    } else if (format.equals("xschem") || format.equals("coral")) {
-      symFormat = "xschem";
-      pinSpacing = 20; 
-    }
-  }
-  
-  public static void setFPFormat(String format) {
-    if (format.equals("PCB") || format.equals("gEDA")) {
-      fpFormat = "PCB";
-    } else if (format.equals("pcb-rnd") || format.equals("coral")) {
-      fpFormat = "pcb-rnd";
-    }
-  }
-
-  public Integer setPinSpacing(String format) {
-    if (format.equals("gschem") || format.equals("gEDA")) {
-      pinSpacing = 200; 
-    } else if (format.equals("xschem") || format.equals("coral")) {
-      pinSpacing = 20; 
-    }
-    return pinSpacing;
-  }
+  // the formats, counters and offsets for the file being converted
+  ConversionContext context = null;
 
   public static String symbolHeader(String format) {
     if (format.equals("gschem")) {
@@ -109,9 +77,9 @@ class CADParser {
   public static void elementWrite(String elementName,
                                   String data) throws IOException {
     try {
-      File newElement = new File(elementName);
-      PrintWriter elementOutput = new PrintWriter(newElement);
-      elementOutput.println(data);
+      BufferedWriter elementOutput = Footprint.elementWriter(elementName);
+      elementOutput.write(data);
+      elementOutput.newLine();
       elementOutput.close();
     } catch(Exception e) {
       System.out.println("There was an error saving: "
@@ -152,8 +152,8 @@ public class Circle extends FootprintElementArchetype
     }
   }
 
-  public String lihataCircle(long xOffset, long yOffset, float magnificationRatio) {
-    return "      ha:arc." + arcCount++ + " {\n       astart = 0\n       thickness = " +
+  public String lihataCircle(long xOffset, long yOffset, float magnificationRatio, ConversionContext context) {
+    return "      ha:arc." + context.arcCount++ + " {\n       astart = 0\n       thickness = " +
 	lineThicknessNm + "nm\n" +
 	"       clearance = 0.0\n" +
 	"       width = " + radiusNm*2 + "nm\n" +
@@ -164,12 +164,12 @@ public class Circle extends FootprintElementArchetype
 	"       ha:attributes {\n       }\n       ha:flags {\n       }\n      }\n";
   }
 
-  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format)
+  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format, ConversionContext context)
   {
     if (format.equals("pcb")) {
       return generateGEDAelement(xOffset, yOffset, magnificationRatio);
     } else {
-      return lihataCircle(xOffset, yOffset, magnificationRatio);
+      return lihataCircle(xOffset, yOffset, magnificationRatio, context);
     }
   }
 
@@ -222,6 +222,10 @@ public class Circle extends FootprintElementArchetype
     return output;
   }
 
+  public void addPreviewShapes(FootprintPreview preview) {
+    preview.arc(this, xCoordNm, yCoordNm, radiusNm, 0, 360, lineThicknessNm);
+  }
+
   public boolean isTop() {
     return true; // TODO: needs to reflect actual layer for object
   }
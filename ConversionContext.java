@@ -0,0 +1,118 @@
+// ConversionContext - the state shared by the parsers and element
+// generators for the duration of a single file conversion
+// ConversionContext.java v1.0
+//
+// Copyright (C) 2015, 2019 Erich S. Heinzle, a1039181@gmail.com
+
+//    see LICENSE-gpl-v2.txt for software license
+//    see README.txt
+//
+//    This program is free software; you can redistribute it and/or
+//    modify it under the terms of the GNU General Public License
+//    as published by the Free Software Foundation; either version 2
+//    of the License, or (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program; if not, write to the Free Software
+//    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+//
+//    ConversionContext Copyright (C) 2015,2019 Erich S. Heinzle a1039181@gmail.com
+//    translate2coralEDA, translate2geda Copyright (C) 2015, 2019
+//    Erich S. Heinzle a1039181@gmail.com
+
+// a new context is created for each file converted, so that
+// conversions running at the same time in the one JVM do not
+// share padstack indices, object counters or text offsets
+
+public class ConversionContext {
+
+  // export settings, copied from the command line defaults
+  String symFormat = "xschem";
+  String fpFormat = "pcb-rnd";
+  Integer pinSpacing = 20;
+  boolean previews = false; // PNG thumbnails of exported footprints
+
+  // where the files are written, i.e. a directory of its own for
+  // each file of a batch, ending with a separator, or "" for the
+  // current directory; footprints go in Converted/ within it
+  String outputDir = "";
+
+  // lihata object ids, which keep counting up across all of
+  // the footprints exported during the conversion
+  int lineCount = 0;
+  int arcCount = 0;
+  int textCount = 0;
+  int padstackInstances = 0;
+  int pourCount = 0;
+
+  // the padstack prototypes of the footprint being exported
+  PadStackRegistry padStacks = new PadStackRegistry();
+
+  // the following three variables are used in an
+  // attempt to keep the symbol annotations tidy and properly
+  // justified relative to the existing text fields
+  long maxTextX = 0;
+  long maxTextY = 0;
+  int invisibleAttributeCount = 0;
+
+  // pin placement for formats which only list pins
+  int BSDLYCoordL = 0; // for use in BSDL and IBIS file conversion
+  int symdefXCoord = 0; // for use in symdef file conversion
+  int symdefYCoord = 0; // for use in symdef file conversion
+
+  public ConversionContext() {
+  }
+
+  // a fresh context, with the export settings of the one supplied
+  public ConversionContext(ConversionContext settings) {
+    symFormat = settings.symFormat;
+    fpFormat = settings.fpFormat;
+    pinSpacing = settings.pinSpacing;
+    previews = settings.previews;
+  }
+
+  public void setFormat(String format) {
+    setSymFormat(format);
+    setFPFormat(format);
+  }
+
+  public void setSymFormat(String format) {
+    if (format.equals("gschem") || format.equals("gEDA")) {
+      symFormat = "gschem";
+      pinSpacing = 200;
+    } else if (format.equals("xschem") || format.equals("coral")) {
+      symFormat = "xschem";
+      pinSpacing = 20;
+    }
+  }
+
+  public void setFPFormat(String format) {
+    if (format.equals("PCB") || format.equals("gEDA")) {
+      fpFormat = "PCB";
+    } else if (format.equals("pcb-rnd") || format.equals("coral")) {
+      fpFormat = "pcb-rnd";
+    }
+  }
+
+  public int padStackRef(Pad p) {
+    return padStacks.indexOf(p.padKey());
+  }
+
+  public void resetSymbolTextAttributeOffsets() {
+    resetSymbolTextAttributeOffsets(0,0);
+  }
+
+  public void resetSymbolTextAttributeOffsets(long newX, long newY) {
+    // we simply want to start all text to the right of the
+    // symbol, and about 100 mil up from the x axis
+    maxTextX = -newX*2 + 100;
+    maxTextY = newY + 100;
+    invisibleAttributeCount = 0;
+  }
+
+}
@@ -110,6 +110,9 @@ public class DrawnElement extends FootprintElementArchetype
   long gEDAlineThickness = 100; // this is 10 mil in 0.1 mil units
 
   int kicadLayer = 21; // 21 is the default = the top silkscreen layer
+  // only an element moved by a gerber job is routed to the bottom
+  // copper and mask layers, other conversions keep their layers
+  boolean layerMoved = false;
 
   String kicadDrawnSegmentDescriptor = "";
 
@@ -382,8 +385,8 @@ public class DrawnElement extends FootprintElementArchetype
       }
   }
 
-  public String lihataLine(long xOffset, long yOffset, float magnificationRatio) {
-    return "      ha:line." + lineCount++ + " {\n       clearance = 0.0\n       thickness = " +
+  public String lihataLine(long xOffset, long yOffset, float magnificationRatio, ConversionContext context) {
+    return "      ha:line." + context.lineCount++ + " {\n       clearance = 0.0\n       thickness = " +
 	lineThicknessNm + "nm\n" +
 	"       x1 = " + (long)((xCoordOneNm + xOffsetNm)*magnificationRatio) + "nm\n" +
 	"       y1 = " + (long)((yCoordOneNm + yOffsetNm)*magnificationRatio) + "nm\n" +
@@ -392,12 +395,12 @@ public class DrawnElement extends FootprintElementArchetype
 	"       ha:attributes {\n       }\n       ha:flags {\n       }\n      }\n";
   }
 
-  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format)
+  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format, ConversionContext context)
   {
     if (format.equals("pcb")) {
       return generateGEDAelement(xOffset, yOffset, magnificationRatio);
     } else {
-      return lihataLine(xOffset, yOffset, magnificationRatio);
+      return lihataLine(xOffset, yOffset, magnificationRatio, context);
     }
   }
 
@@ -470,6 +473,11 @@ public class DrawnElement extends FootprintElementArchetype
     return output;
   }
 
+  public void addPreviewShapes(FootprintPreview preview) {
+    preview.line(this, xCoordOneNm, yCoordOneNm, xCoordTwoNm, yCoordTwoNm,
+                 lineThicknessNm);
+  }
+
   public boolean isTop() {
     return kicadLayer == 21;
   }
@@ -482,4 +490,21 @@ public class DrawnElement extends FootprintElementArchetype
     return kicadLayer == 20;
   }
 
+  public boolean isBottomCopper() {
+    return layerMoved && kicadLayer == 0;
+  }
+
+  public boolean isTopMask() {
+    return layerMoved && kicadLayer == 23;
+  }
+
+  public boolean isBottomMask() {
+    return layerMoved && kicadLayer == 22;
+  }
+
+  public void setKicadLayer(int layer) {
+    kicadLayer = layer;
+    layerMoved = true;
+  }
+
 }
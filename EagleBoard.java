@@ -0,0 +1,97 @@
+// EagleBoard.java v1.0
+// Copyright (C) 2022 Erich S. Heinzle, a1039181@gmail.com
+//
+// keeps the element placements and pad connections of an Eagle .brd
+// file, along with the footprint each embedded library package was
+// converted to, so that a placement manifest can be written for the
+// footprints exported from the board
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful, but
+// WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// A board embeds a copy of each library it uses, and the same package
+// is often found in several of them. Packages are identified by their
+// library, and the library's urn in newer files, along with their own
+// name, which is how the elements refer to them. Identical packages
+// share a footprint, so several packages may map to the one name.
+//
+// The manifest is tab separated, with the coordinates in millimetres,
+// and rotations in degrees, as given in the board file, i.e. with the
+// y axis pointing up.
+
+public class EagleBoard {
+
+  // element name, package key, package name, x, y, rotation, value
+  private ArrayList<String []> placements = new ArrayList<String []>();
+  // element name, pad name, signal name
+  private ArrayList<String []> contacts = new ArrayList<String []>();
+  private HashMap<String,String> footprintNames = new HashMap<String,String>();
+
+  public static String packageKey(String library, String libraryUrn, String packageName) {
+    return library + "\t" + libraryUrn + "\t" + packageName;
+  }
+
+  public void setFootprintName(String packageKey, String footprintName) {
+    footprintNames.put(packageKey, footprintName);
+  }
+
+  public void addElement(String name, String packageKey, String packageName,
+                         String x, String y, String rotation, String value) {
+    placements.add(new String [] {name, packageKey, packageName,
+                                  x, y, rotation, value});
+  }
+
+  public void addContact(String element, String pad, String signal) {
+    contacts.add(new String [] {element, pad, signal});
+  }
+
+  public int placementCount() {
+    return placements.size();
+  }
+
+  public String manifest(String boardName) {
+    StringBuilder manifest = new StringBuilder();
+    manifest.append("# placements of ").append(boardName).append(", one line per element\n");
+    manifest.append("# element\tfootprint\tx\ty\trotation\tside\tvalue\n");
+    for (String [] placement : placements) {
+      String footprint = footprintNames.get(placement[1]);
+      if (footprint == null) {
+        footprint = placement[2]; // the package wasn't in the board's libraries
+      }
+      // R90 is rotated, MR90 mirrored onto the bottom, and SR90 spun
+      String rotation = placement[5];
+      boolean bottom = rotation.indexOf('M') != -1;
+      String degrees = rotation.replaceAll("[^0-9.]", "");
+      manifest.append(placement[0]).append('\t')
+          .append(footprint).append('\t')
+          .append(placement[3]).append('\t')
+          .append(placement[4]).append('\t')
+          .append(degrees.length() == 0 ? "0" : degrees).append('\t')
+          .append(bottom ? "bottom" : "top").append('\t')
+          .append(placement[6]).append('\n');
+    }
+    manifest.append("# pad connections, one line per pad\n");
+    manifest.append("# element\tpad\tsignal\n");
+    for (String [] contact : contacts) {
+      manifest.append(contact[0]).append('\t')
+          .append(contact[1]).append('\t')
+          .append(contact[2]).append('\n');
+    }
+    return manifest.toString();
+  }
+
+}
@@ -22,10 +22,14 @@
 //    translate2geda Copyright (C) 2016 Erich S. Heinzle a1039181@gmail.com
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 public class EagleDevice {
 
   private ArrayList<String[]> connections = new ArrayList<String[]>();
+  // the pad of each pin, for renumbering a symbol's pins without
+  // searching the connections for every pin
+  private HashMap<String,String> padsByPin = new HashMap<String,String>();
   private String FPName = "unknown"; // default
 
   private ArrayList<String> applicableSymbols = new ArrayList<String>();
@@ -64,6 +68,7 @@ public class EagleDevice {
           }
         }
         connections.add(new String[] {gate, pin, pad});
+        padsByPin.put(pin, pad); // the last connection wins, as before
       }
     }
 
@@ -116,14 +121,11 @@ public class EagleDevice {
   // we use this method to interrogate the pin mapping
   // data and return the pad's number foor the footprint
   public String supplyPadNum(String symPinLabel) {
-    String returnVal = "0"; // default
     //System.out.println("Pin being looked for in pin mapping is: "
     //                   + symPinLabel);
-    for (String[] connection : connections) {
-      //System.out.println("... now comparing to: " + connection[1]);
-      if (connection[1].equals(symPinLabel)) {
-        returnVal = connection[2];
-      }
+    String returnVal = padsByPin.get(symPinLabel);
+    if (returnVal == null) {
+      return "0"; // default
     }
     return returnVal;
   }
@@ -148,6 +150,11 @@ public class EagleDevice {
     return returnVal;
   }
 
+  // the names of the symbols used by the device's gates
+  public ArrayList<String> supplySymbolNames() {
+    return applicableSymbols;
+  }
+
   public String supplyFPName() {
     return FPName; // default is "unknown"
   }
@@ -22,6 +22,7 @@
 //    translate2geda Copyright (C) 2016 Erich S. Heinzle a1039181@gmail.com
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Scanner;
 
 public class EagleDeviceSet {
@@ -30,6 +31,11 @@ public class EagleDeviceSet {
   
   ArrayList<EagleDevice> deviceSet = new ArrayList<EagleDevice>();
 
+  // the devices for each symbol, in the order they were defined, so
+  // that symbols don't have to be compared with every device
+  private HashMap<String,ArrayList<EagleDevice>> devicesBySymbol
+      = new HashMap<String,ArrayList<EagleDevice>>();
+
   // we use this to turn a supplied arraylist of deviceSet descriptions
   // into an ArrayList of EagleDevices
   public EagleDeviceSet(ArrayList<String> theDeviceSets) {
@@ -76,6 +82,14 @@ public class EagleDeviceSet {
             EagleDevice deviceDesc
                 = new EagleDevice(currentDevice, gateNames);
             deviceSet.add(deviceDesc);
+            for (String symbolName : deviceDesc.supplySymbolNames()) {
+              ArrayList<EagleDevice> devices = devicesBySymbol.get(symbolName);
+              if (devices == null) {
+                devices = new ArrayList<EagleDevice>();
+                devicesBySymbol.put(symbolName, devices);
+              }
+              devices.add(deviceDesc);
+            }
             //}
           }
         }
@@ -86,27 +100,18 @@ public class EagleDeviceSet {
   // may not need this if we return an empty ArrayList from
   // next method
   public boolean containsSymbol(String symbolName) {
-    boolean contains = false; 
     //System.out.println("Testing for following symbol " + symbolName);
-    for (EagleDevice currentDevice : deviceSet) {
-      if (currentDevice.isForSymbol(symbolName)) {
-        contains = true;
-      }
-    }
-    return contains;
+    return devicesBySymbol.containsKey(symbolName);
   }
 
   // we can use this to return a list of devices using a given
   // symbol name
   public ArrayList<EagleDevice> supplyDevicesFor(String symbolName) {
-    ArrayList<EagleDevice> returnedDevices
-        = new ArrayList<EagleDevice>();
-    for (EagleDevice currentDevice : deviceSet) {
-      if (currentDevice.isForSymbol(symbolName)) {
-        returnedDevices.add(currentDevice);
-      }
+    ArrayList<EagleDevice> returnedDevices = devicesBySymbol.get(symbolName);
+    if (returnedDevices == null) {
+      return new ArrayList<EagleDevice>();
     }
-    return returnedDevices;
+    return new ArrayList<EagleDevice>(returnedDevices);
   }
 
 }
@@ -48,6 +48,14 @@ public class EagleLayers {
   String currentTopSilk = "";
   String currentDrawnSilkText = "";
 
+  // the roles of each eagle layer number, worked out once, so that
+  // elements can be sorted without any string handling
+  static final byte TOP_SILK = 1;
+  static final byte TOP_COPPER = 2;
+  static final byte BOTTOM_COPPER = 4;
+  static final byte SILK_TEXT = 8;
+  private byte [] roles = new byte[256];
+
   public EagleLayers() {
     //empty
   }
@@ -98,6 +106,11 @@ public class EagleLayers {
       }
     }
 
+    addRole(currentTopSilk, TOP_SILK);
+    addRole(currentTopCopper, TOP_COPPER);
+    addRole(currentBottomCopper, BOTTOM_COPPER);
+    addRole(currentDrawnSilkText, SILK_TEXT);
+
     if (currentTopSilk.equals("") ||
         currentDrawnSilkText.equals("") ||
         currentTopCopper.equals("") ||
@@ -120,23 +133,62 @@ public class EagleLayers {
   }
 
   public boolean isDrawnTopSilk(String layerNum) {
-    layerNum = extractLayerNumText(layerNum);
-    return (layerNum.equals(currentTopSilk));
+    return isDrawnTopSilk(layerNumber(extractLayerNumText(layerNum)));
   }
 
   public boolean isTopCopper(String layerNum) {
-    layerNum = extractLayerNumText(layerNum);
-    return (layerNum.equals(currentTopCopper));
+    return isTopCopper(layerNumber(extractLayerNumText(layerNum)));
   }
 
   public boolean isBottomCopper(String layerNum) {
-    layerNum = extractLayerNumText(layerNum);
-    return (layerNum.equals(currentBottomCopper));
+    return isBottomCopper(layerNumber(extractLayerNumText(layerNum)));
   }
 
   public boolean isSilkText(String layerNum) {
-    layerNum = extractLayerNumText(layerNum);
-    return (layerNum.equals(currentDrawnSilkText));
+    return isSilkText(layerNumber(extractLayerNumText(layerNum)));
+  }
+
+  public boolean isDrawnTopSilk(int layer) {
+    return (role(layer) & TOP_SILK) != 0;
+  }
+
+  public boolean isTopCopper(int layer) {
+    return (role(layer) & TOP_COPPER) != 0;
+  }
+
+  public boolean isBottomCopper(int layer) {
+    return (role(layer) & BOTTOM_COPPER) != 0;
+  }
+
+  public boolean isSilkText(int layer) {
+    return (role(layer) & SILK_TEXT) != 0;
+  }
+
+  // the number of a layer attribute's value, or -1 if it is missing
+  // or isn't a layer number
+  public static int layerNumber(String layerText) {
+    if (layerText == null) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(layerText.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private byte role(int layer) {
+    if (layer < 0 || layer >= roles.length) {
+      return 0;
+    }
+    return roles[layer];
+  }
+
+  private void addRole(String layerNum, byte role) {
+    int layer = layerNumber(layerNum);
+    if (layer >= 0 && layer < roles.length) {
+      roles[layer] |= role;
+    }
   }
 
   private String extractLayerNumText(String arg) {
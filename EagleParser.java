@@ -30,219 +30,239 @@
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 // Eagle libraries provide footprint data, pin mapping, and
 // schematic symbol data
 // This parser can also be used for XML .brd files to extract contents
+//
+// The file is read as a stream of XML events, so elements are found
+// however the file happens to be laid out, and only the package being
+// built, or the symbols and device sets, are held in memory at a time.
+// Each element's attributes are passed on as a one line tag, which is
+// what the populateEagleElement() methods of the elements expect.
+//
+// Packages and symbols don't depend on each other, so each is built
+// on a fork-join pool, while the file is still being read in the case
+// of packages. The results are collected in the order of the library,
+// and written out in that order, so the files produced, and the
+// lihata ids numbered across the footprints, don't depend on which
+// task finished first.
+//
+// A board embeds a library for each library it uses, and the same
+// package is often copied into several of them. With a .brd file, a
+// package with the same elements as one already read reuses its
+// footprint, so only the distinct packages are built and exported.
+// The placements of the board's elements, and the signals their pads
+// are connected to, are written to a manifest naming those footprints.
 
 class EagleParser extends CADParser {
 
-  private static boolean verbose = false;
+  private boolean verbose = false;
 
   static String exportPath = "Converted/";
   static float magnificationRatio = 1.0f;
 
-  public EagleParser(String filename, boolean verbose) {
+  public EagleParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File symDefFile = new File(filename);
     if (!symDefFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting formats: " + fpFormat + ", " + symFormat);
+      System.out.println("Parsing: " + filename + " and exporting formats: " + context.fpFormat + ", " + context.symFormat);
     }
     this.verbose = verbose;
   }
 
-  public static String [] convert(String LBRFile) throws IOException {
-    File EagleLBR = new File(LBRFile);
-    Scanner eagleLib = new Scanner(EagleLBR);
-
-    String currentLine = "";
-    String newElement = "";
-    String newSymbol = "";
-    String symAttributes = "";
-    String elData = "";
-    String elName = "";
-    EagleLayers layers = new EagleLayers();
+  public String [] convert(String LBRFile) throws IOException {
+    EagleLayers layers = null;
     EagleDeviceSet deviceSets = null;
 
-    ArrayList<Footprint> footprints = new ArrayList<Footprint>();
-    Footprint footprint;
-    
+    // the footprints, in the order of the library
+    List<ForkJoinTask<Footprint>> packageBuilds
+        = new ArrayList<ForkJoinTask<Footprint>>();
+    EaglePackage eaglePackage = null;
+
     PinList pins = new PinList(0); // slots = 0
 
     List<String> convertedFiles = new ArrayList<String>();
     ArrayList<String> layerDefs = new ArrayList<String>();
-    ArrayList<String> packageDefs = new ArrayList<String>();
-    ArrayList<String> symbolDefs = new ArrayList<String>();
+    ArrayList<String> symbolNames = new ArrayList<String>();
+    ArrayList<PinList> symbolPins = new ArrayList<PinList>();
     ArrayList<String> deviceSetDefs = new ArrayList<String>();
 
-
-    long xOffset = 0;
-    long yOffset = 0; // used to justify symbol
-    long textXOffset = 0; // used for attribute fields
-
-    String lastline = "";
-
-    while (eagleLib.hasNextLine() && (lastline != null)) {
-      lastline = eagleLib.nextLine();// make nextLine() null safe 
-      currentLine = safelyTrim(lastline); // when using gcj libs
-      if (currentLine.startsWith("<layers>")) {
-        while (eagleLib.hasNextLine() &&
-               !currentLine.startsWith("</layers>")) {
-          currentLine = eagleLib.nextLine().trim();
-          layerDefs.add(currentLine);
-        }
-      } else if (currentLine.startsWith("<packages>")) {
-        while (eagleLib.hasNextLine() &&
-               !currentLine.startsWith("</packages>")) {
-          currentLine = eagleLib.nextLine().trim();
-          packageDefs.add(currentLine);
-        }
-      } else if (currentLine.startsWith("<symbols>")) {
-        while (eagleLib.hasNextLine() &&
-               !currentLine.startsWith("</symbols>")) {
-          currentLine = eagleLib.nextLine().trim();
-          symbolDefs.add(currentLine);
-        }
-      } else if (currentLine.startsWith("<devicesets>")) {
-        currentLine = eagleLib.nextLine().trim();
-        while (eagleLib.hasNextLine() &&
-               !currentLine.startsWith("</devicesets>")) {
-          if (currentLine.startsWith("<deviceset ") &&
-              eagleLib.hasNextLine()) {
-            String currentGates = "";
-            currentLine = eagleLib.nextLine().trim();
-            while (eagleLib.hasNextLine() &&
-                   !currentLine.startsWith("</deviceset>")) {
-              if (currentLine.startsWith("<gates>")) {
-                currentGates = currentLine + "\n";
-                currentLine = eagleLib.nextLine().trim();
-                while (eagleLib.hasNextLine() &&
-                       !currentLine.startsWith("</gates>")) {
-                  currentGates = currentGates + currentLine + "\n";
-                  // System.out.println("Found some gates");
-                  currentLine = eagleLib.nextLine().trim();
-                }
-                currentGates = currentGates + currentLine + "\n";
-                //System.out.println("Found a set of gates");
-              } else if (currentLine.startsWith("<device ")) {
-                String currentDef = currentLine + "\n";
-                // System.out.println("Found a device set line");
-                currentLine = eagleLib.nextLine().trim();
-                while (eagleLib.hasNextLine() &&
-                       !currentLine.startsWith("</device>")) {
-                  currentDef = currentDef + currentLine + "\n";
-                  // System.out.println("Found a device set line");
-                  currentLine = eagleLib.nextLine().trim();
-                }
-                currentDef = currentGates +
-                    currentDef + currentLine + "\n";
-                deviceSetDefs.add(currentDef);
-                //System.out.println("Found a device set:");
-                //System.out.println(currentDef);
+    // the partly read polygon, gate list and device, if any
+    StringBuilder polyDef = null;
+    StringBuilder gates = null;
+    String currentGates = "";
+    StringBuilder device = null;
+    String symbolName = null;
+
+    // a board's placements and pad connections, with the footprint
+    // already built for each package geometry, and the names in use,
+    // so that packages repeated across the embedded libraries are
+    // only built once
+    EagleBoard board = null;
+    String libraryName = "";
+    String libraryUrn = "";
+    String signalName = "";
+    HashMap<String,String> footprintsByGeometry = new HashMap<String,String>();
+    HashSet<String> footprintNames = new HashSet<String>();
+
+    // each package is handed to the pool to be built once it has been
+    // read, since the layers come before the library in an eagle file,
+    // but symbols have to wait for the device sets which follow them
+    Reader eagleFile = new BufferedReader(new FileReader(LBRFile));
+    try {
+      XMLStreamReader xml = eagleReader(eagleFile);
+      while (xml.hasNext()) {
+        int event = xml.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          String name = xml.getLocalName();
+          if (name.equals("layer")) {
+            layerDefs.add(eagleTag(xml));
+          } else if (name.equals("package") && eaglePackage == null) {
+            if (layers == null) {
+              layers = eagleLayers(layerDefs);
+            }
+            String FPName = attribute(xml, "name").replaceAll("[\">=/]","");
+            eaglePackage = new EaglePackage(FPName);
+            eaglePackage.key = EagleBoard.packageKey(libraryName, libraryUrn,
+                                                     attribute(xml, "name"));
+          } else if (eaglePackage != null) {
+            String currentLine = eagleTag(xml);
+            int layer = EagleLayers.layerNumber(xml.getAttributeValue(null, "layer"));
+            if (name.equals("smd") || name.equals("pad") || name.equals("hole")) {
+              eaglePackage.add(EaglePackage.PAD, currentLine);
+            } else if (name.equals("wire") && layers.isDrawnTopSilk(layer)) {
+              if (xml.getAttributeValue(null, "curve") == null) {
+                eaglePackage.add(EaglePackage.LINE, currentLine);
+              } else {
+                eaglePackage.add(EaglePackage.ARC, currentLine);
               }
-              lastline = eagleLib.nextLine();//make nextLine()nullsafe 
-              currentLine = safelyTrim(lastline);// when using gcj libs
+            } else if (name.equals("rectangle") && layers.isDrawnTopSilk(layer)) {
+              eaglePackage.add(EaglePackage.RECTANGLE, currentLine);
+            } else if (name.equals("circle") && layers.isDrawnTopSilk(layer)) {
+              eaglePackage.add(EaglePackage.CIRCLE, currentLine);
+            } else if (name.equals("polygon") &&
+                       (layers.isTopCopper(layer) ||
+                        layers.isBottomCopper(layer) ||
+                        layers.isDrawnTopSilk(layer))) {
+              polyDef = new StringBuilder(currentLine);
+            } else if (name.equals("vertex") && polyDef != null) {
+              polyDef.append(currentLine);
             }
+          } else if (name.equals("board")) {
+            board = new EagleBoard();
+          } else if (name.equals("library")) {
+            libraryName = attribute(xml, "name");
+            libraryUrn = attribute(xml, "urn");
+          } else if (name.equals("element") && board != null) {
+            String packageName = attribute(xml, "package");
+            board.addElement(attribute(xml, "name"),
+                             EagleBoard.packageKey(attribute(xml, "library"),
+                                                   attribute(xml, "library_urn"),
+                                                   packageName),
+                             packageName.replaceAll("[\">=/]",""),
+                             attribute(xml, "x"), attribute(xml, "y"),
+                             attribute(xml, "rot"), attribute(xml, "value"));
+          } else if (name.equals("signal")) {
+            signalName = attribute(xml, "name");
+          } else if (name.equals("contactref") && board != null) {
+            board.addContact(attribute(xml, "element"), attribute(xml, "pad"),
+                             signalName);
+          } else if (name.equals("symbol")) {
+            symbolName // name="......"
+                = attribute(xml, "name").replaceAll("[\"\\/>]","");
+            pins = new PinList(0); // slots = 0
+          } else if (name.equals("pin") && symbolName != null) {
+            SymbolPin latestPin = new SymbolPin();
+            latestPin.populateEagleElement(eagleTag(xml));
+            pins.addPin(latestPin);
+          } else if (name.equals("deviceset")) {
+            currentGates = "";
+          } else if (name.equals("gates")) {
+            gates = new StringBuilder("<gates>\n");
+          } else if (name.equals("gate") && gates != null) {
+            gates.append(eagleTag(xml)).append("\n");
+          } else if (name.equals("device")) {
+            device = new StringBuilder(currentGates);
+            device.append(eagleTag(xml)).append("\n");
+          } else if (device != null) {
+            device.append(eagleTag(xml)).append("\n");
           }
-          lastline = eagleLib.nextLine();// make nextLine() null safe 
-          currentLine = safelyTrim(lastline); // when using gcj libs
-        } //resume while loop
-      }
-    }
-
-    // first, we create the layer definition object
-    // which is used for extraction of other elements
-    if (layerDefs.size() == 0) {
-      System.out.println("This eagle library appears to be missing "
-                         + "layer definitions needed for conversion");
-    }
-    layers = new EagleLayers(layerDefs);
-
-    // we now turn our ArrayList into a string to pass to a scanner
-    // object
-    String packageDefString = "";
-    for (String packageLine : packageDefs) {
-      packageDefString = packageDefString + packageLine + "\n";
-    }    
-
-    // next, we parse and process the package (=FP )defs
-    if (verbose) {
-      System.out.println("Moving onto FPs");
-    }
-
-    Scanner packagesBundle = new Scanner(packageDefString);
-
-    lastline = "";
-    while (packagesBundle.hasNextLine() && (lastline != null)) {
-      lastline = packagesBundle.nextLine();//make nextLine() null safe 
-      currentLine = safelyTrim(lastline); // when using gcj libs
-      if (currentLine.startsWith("<package name")) {
-        String [] tokens = currentLine.split(" ");
-        String FPName
-            = tokens[1].replaceAll("[\">=/]","").substring(4);
-        footprint = new Footprint(FPName);
-        while (packagesBundle.hasNextLine() &&
-               !currentLine.startsWith("</package>")) {
-          currentLine = packagesBundle.nextLine().trim();
-          if (currentLine.startsWith("<smd") ||
-              currentLine.startsWith("<pad") ||
-              currentLine.startsWith("<hole")) {
-            Pad newPad = new Pad();
-            newPad.populateEagleElement(currentLine);
-            footprint.add(newPad);
-          } else if (currentLine.startsWith("<wire") &&
-                     layers.isDrawnTopSilk(currentLine)) {
-            if (!currentLine.contains("curve=")) {
-              DrawnElement silkLine = new DrawnElement();
-              silkLine.populateEagleElement(currentLine);
-              footprint.add(silkLine);
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          String name = xml.getLocalName();
+          if (name.equals("layers")) {
+            layers = eagleLayers(layerDefs);
+          } else if (name.equals("package") && eaglePackage != null) {
+            if (board == null) {
+              packageBuilds.add(ForkJoinPool.commonPool().submit(eaglePackage));
             } else {
-              Arc silkArc = new Arc();
-              silkArc.populateEagleElement(currentLine);
-              footprint.add(silkArc);              
-            }
-          } else if (currentLine.startsWith("<rectangle") &&
-                     layers.isDrawnTopSilk(currentLine)) {
-            DrawnElement [] silkLines
-                = DrawnElement.eagleRectangleAsLines(currentLine);
-            for (DrawnElement side : silkLines) {
-              footprint.add(side);
+              String geometry = eaglePackage.fingerprint();
+              String footprintName = footprintsByGeometry.get(geometry);
+              if (footprintName == null) {
+                // a different package with a name already in use is
+                // named after its library as well
+                footprintName = eaglePackage.FPName;
+                if (footprintNames.contains(footprintName)) {
+                  footprintName = eaglePackage.FPName + "_"
+                      + libraryName.replaceAll("[\">=/ ]","");
+                }
+                for (int copy = 2; footprintNames.contains(footprintName); copy++) {
+                  footprintName = eaglePackage.FPName + "_" + copy;
+                }
+                footprintNames.add(footprintName);
+                footprintsByGeometry.put(geometry, footprintName);
+                eaglePackage.FPName = footprintName;
+                packageBuilds.add(ForkJoinPool.commonPool().submit(eaglePackage));
+              }
+              board.setFootprintName(eaglePackage.key, footprintName);
             }
-          } else if (currentLine.startsWith("<circle") &&
-                     layers.isDrawnTopSilk(currentLine)) {
-            Circle silkCircle = new Circle();
-            silkCircle.populateEagleElement(currentLine);
-            footprint.add(silkCircle);;
-          } else if (currentLine.startsWith("<polygon") &&
-                     (layers.isTopCopper(currentLine) ||
-                      layers.isBottomCopper(currentLine) ||
-                      layers.isDrawnTopSilk(currentLine))) {
-            String polyDef = currentLine; 
-            while (packagesBundle.hasNextLine() &&
-                   !currentLine.startsWith("</polygon")) {
-              currentLine = packagesBundle.nextLine().trim();
-              polyDef = polyDef + currentLine;
+            eaglePackage = null;
+          } else if (name.equals("library")) {
+            libraryName = "";
+            libraryUrn = "";
+          } else if (name.equals("polygon") && polyDef != null) {
+            eaglePackage.add(EaglePackage.POLYGON, polyDef.toString());
+            polyDef = null;
+          } else if (name.equals("symbol") && symbolName != null) {
+            if (verbose) {
+              System.out.println("Found symbol name:" + symbolName);
             }
-            PolyPour polyPour = new PolyPour();
-            polyPour.populateEagleElement(polyDef);
-            footprint.add(polyPour);
+            symbolNames.add(symbolName);
+            symbolPins.add(pins);
+            symbolName = null;
+          } else if (name.equals("gates") && gates != null) {
+            currentGates = gates.append("</gates>\n").toString();
+            gates = null;
+          } else if (name.equals("device") && device != null) {
+            deviceSetDefs.add(device.append("</device>\n").toString());
+            device = null;
           }
-          
-        } // end if for "<package name"
-
-        footprints.add(footprint);
-      } // end of this particular package while loop
-    } // end of packagesBundle while loop
-
+        }
+      }
+      xml.close();
+    } catch (XMLStreamException e) {
+      throw new IOException("Error parsing " + LBRFile + ": " + e.getMessage());
+    } finally {
+      eagleFile.close();
+    }
 
     // we now create the set of eagle devices from which pin mappings
     // can be retrieved
     if (deviceSetDefs.size() != 0) {
       if (verbose) {
-        System.out.println("About to create EagleDeviceSet object"); 
+        System.out.println("About to create EagleDeviceSet object");
       }
       deviceSets = new EagleDeviceSet(deviceSetDefs);
       if (verbose) {
@@ -250,212 +270,363 @@ class EagleParser extends CADParser {
       }
     } // we leave it as null if none found during parsing
 
+    // next, we process the symbols
     if (verbose) {
-      System.out.println("About to process SymbolDefs"); 
+      System.out.println("About to create individual symbols");
     }
-    // we now turn our symbol ArrayList into a string to pass
-    // to a scanner object
-    // StringBuilder might perform better here...
-    String symbolDefString = "";
-    for (String symbolLine : symbolDefs) {
-      symbolDefString = symbolDefString + symbolLine + "\n";
+
+    List<EagleSymbol> symbolBuilds = new ArrayList<EagleSymbol>();
+    for (int symbolIndex = 0; symbolIndex < symbolNames.size(); symbolIndex++) {
+      EagleSymbol symbolBuild = new EagleSymbol(symbolNames.get(symbolIndex),
+                                                symbolPins.get(symbolIndex),
+                                                deviceSets);
+      ForkJoinPool.commonPool().execute(symbolBuild);
+      symbolBuilds.add(symbolBuild);
     }
 
-    Scanner symbolBundle = new Scanner(symbolDefString);
+    // the files are written in the order of the library, so that a
+    // symbol name used twice ends up as it would converting serially
+    for (EagleSymbol symbolBuild : symbolBuilds) {
+      ArrayList<String []> symbols = symbolBuild.join();
+      if (symbolBuild.unmatched) {
+        System.out.println("No matching footprint specified for: "
+                           + symbolBuild.symbolName);
+      }
+      for (String [] symbol : symbols) {
+        elementWrite(context.outputDir + symbol[0], symbol[1]);
+        convertedFiles.add(symbol[0]);
+      }
+    }
 
-    // next, we parse and process the package (=FP )defs
-    if (verbose) {
-      System.out.println("About to create individual symbols"); 
+    ArrayList<Footprint> footprints = new ArrayList<Footprint>();
+    for (ForkJoinTask<Footprint> packageBuild : packageBuilds) {
+      footprints.add(packageBuild.join());
     }
 
-    lastline = "";
-    while (symbolBundle.hasNextLine()) {
-      lastline = symbolBundle.nextLine();// make nextLine() null safe 
-      currentLine = safelyTrim(lastline); // when using gcj libs
-      if (currentLine.startsWith("<symbol ")) {
-        String [] tokens = currentLine.split(" ");
-        String symbolName // name="......"
-            = tokens[1].substring(6).replaceAll("[\"\\/>]","");
-        if (verbose) {
-          System.out.println("Found symbol name:" + symbolName);
+    List<String> footprintsExported
+        = Arrays.asList(Footprint.exportFootprints(LBRFile, footprints,
+                                                   context,
+                                                   magnificationRatio,
+                                                   exportPath,
+                                                   true, verbose));
+    convertedFiles.addAll(footprintsExported);    
+
+    if (board != null) {
+      String boardName = new File(LBRFile).getName();
+      if (boardName.toLowerCase().endsWith(".brd")) {
+        boardName = boardName.substring(0, boardName.length() - 4);
+      }
+      String manifestName = boardName + "-placements.txt";
+      if (verbose) {
+        System.out.println(board.placementCount() + " placements of "
+                           + footprints.size() + " footprints");
+      }
+      elementWrite(context.outputDir + exportPath + manifestName, board.manifest(new File(LBRFile).getName()));
+      convertedFiles.add(manifestName);
+    }
+    return convertedFiles.toArray(new String[convertedFiles.size()]);
+  } 
+
+  // the DTD named by eagle files isn't needed, and isn't fetched
+  private static XMLStreamReader eagleReader(Reader in) throws XMLStreamException {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    return factory.createXMLStreamReader(in);
+  }
+
+  private EagleLayers eagleLayers(ArrayList<String> layerDefs) {
+    // the layer definition object is used for extraction of
+    // other elements
+    if (layerDefs.size() == 0) {
+      System.out.println("This eagle library appears to be missing "
+                         + "layer definitions needed for conversion");
+    }
+    return new EagleLayers(layerDefs);
+  }
+
+  private static String attribute(XMLStreamReader xml, String name) {
+    String value = xml.getAttributeValue(null, name);
+    return (value == null) ? "" : value;
+  }
+
+  // the current element's start tag, on one line, with its attributes
+  // in the order, and with the escapes, of the file
+  private static String eagleTag(XMLStreamReader xml) {
+    StringBuilder tag = new StringBuilder("<").append(xml.getLocalName());
+    for (int index = 0; index < xml.getAttributeCount(); index++) {
+      tag.append(' ').append(xml.getAttributeLocalName(index)).append("=\"");
+      String value = xml.getAttributeValue(index);
+      for (int c = 0; c < value.length(); c++) {
+        char ch = value.charAt(c);
+        if (ch == '&') {
+          tag.append("&amp;");
+        } else if (ch == '<') {
+          tag.append("&lt;");
+        } else if (ch == '>') {
+          tag.append("&gt;");
+        } else if (ch == '"') {
+          tag.append("&quot;");
+        } else {
+          tag.append(ch);
         }
-        List<String> silkFeatures = new ArrayList<String>();
-        List<String> attributeFields = new ArrayList<String>();
-        pins = new PinList(0); // slots = 0
-        while (symbolBundle.hasNextLine() &&
-               !currentLine.startsWith("</symbol")) {
-          currentLine = symbolBundle.nextLine().trim();
-          if (currentLine.startsWith("<pin")) {
-            //System.out.println("#Making new pin: " + currentLine);
-            SymbolPin latestPin = new SymbolPin();
-            latestPin.populateEagleElement(currentLine);
-            pins.addPin(latestPin);
-          } else if (currentLine.startsWith("Line") ||
-                     currentLine.startsWith("Arc (Layer TOP_SILK")) {
-            //silkFeatures.add(currentLine);
-          } else if (currentLine.startsWith("Attribute")) {
-            //attributeFields.add(currentLine);
+      }
+      tag.append('"');
+    }
+    return tag.append("/>").toString();
+  }
+
+
+  // the elements of a package, as one line tags, which are turned
+  // into the elements of a footprint when the task is run
+  private static class EaglePackage extends RecursiveTask<Footprint> {
+    private static final long serialVersionUID = 1L;
+
+    static final int PAD = 0;
+    static final int LINE = 1;
+    static final int ARC = 2;
+    static final int RECTANGLE = 3;
+    static final int CIRCLE = 4;
+    static final int POLYGON = 5;
+
+    String FPName;
+    String key = ""; // the library and name the package is known by
+    private final ArrayList<Integer> kinds = new ArrayList<Integer>();
+    private final ArrayList<String> tags = new ArrayList<String>();
+
+    EaglePackage(String FPName) {
+      this.FPName = FPName;
+    }
+
+    void add(int kind, String tag) {
+      kinds.add(kind);
+      tags.add(tag);
+    }
+
+    // the package's elements, which identical packages from
+    // different libraries share, whatever they are called
+    String fingerprint() {
+      StringBuilder geometry = new StringBuilder();
+      for (int index = 0; index < tags.size(); index++) {
+        geometry.append(kinds.get(index)).append(tags.get(index)).append('\n');
+      }
+      return geometry.toString();
+    }
+
+    protected Footprint compute() {
+      Footprint footprint = new Footprint(FPName);
+      for (int index = 0; index < tags.size(); index++) {
+        String currentLine = tags.get(index);
+        int kind = kinds.get(index);
+        if (kind == PAD) {
+          Pad newPad = new Pad();
+          newPad.populateEagleElement(currentLine);
+          footprint.add(newPad);
+        } else if (kind == LINE) {
+          DrawnElement silkLine = new DrawnElement();
+          silkLine.populateEagleElement(currentLine);
+          footprint.add(silkLine);
+        } else if (kind == ARC) {
+          Arc silkArc = new Arc();
+          silkArc.populateEagleElement(currentLine);
+          footprint.add(silkArc);
+        } else if (kind == RECTANGLE) {
+          DrawnElement [] silkLines
+              = DrawnElement.eagleRectangleAsLines(currentLine);
+          for (DrawnElement side : silkLines) {
+            footprint.add(side);
           }
+        } else if (kind == CIRCLE) {
+          Circle silkCircle = new Circle();
+          silkCircle.populateEagleElement(currentLine);
+          footprint.add(silkCircle);
+        } else if (kind == POLYGON) {
+          PolyPour polyPour = new PolyPour();
+          polyPour.populateEagleElement(currentLine);
+          footprint.add(polyPour);
         }
+      }
+      return footprint;
+    }
+  }
+
+  // a symbol, with a copy of the symbol for each device using it, is
+  // built from its pins on its own, so symbols can be built in
+  // parallel; each has its own context for its text offsets
+  private class EagleSymbol extends RecursiveTask<ArrayList<String []>> {
+    private static final long serialVersionUID = 1L;
+
+    private final String symbolName;
+    private final PinList pins;
+    private final EagleDeviceSet deviceSets;
+    boolean unmatched = false; // no device maps the symbol's pins
+
+    EagleSymbol(String symbolName, PinList pins, EagleDeviceSet deviceSets) {
+      this.symbolName = symbolName;
+      this.pins = pins;
+      this.deviceSets = deviceSets;
+    }
+
+    // the file name and text of each symbol variant
+    protected ArrayList<String []> compute() {
+      ConversionContext context = new ConversionContext(EagleParser.this.context);
+      ArrayList<String []> symbols = new ArrayList<String []>();
+      String newElement = "";
+      String newSymbol = "";
+      String symAttributes = "";
+      String elData = "";
+      String elName = "";
+      long xOffset = 0;
+      long yOffset = 0; // used to justify symbol
+      long textXOffset = 0; // used for attribute fields
+      List<String> silkFeatures = new ArrayList<String>();
+      List<String> attributeFields = new ArrayList<String>();
+
+      // now we have a list of pins, we can calculate the offsets
+      // to justify the element in gschem, and justify the attribute
+      // fields.
+
+      // we may need to turn this off if converting entire schematics
+      // at some point in the future
+      if (!pins.empty()) {
+        xOffset = pins.minX();
+        yOffset = pins.minY()-200;  // includes bounding box
+        // spacing of ~ 200 takes care of the bounding box
+        textXOffset = pins.textRHS(); //??? broken for some reason
+      }
+      // additional bounding box extents are calculated by minY()
+
+      for (String feature : silkFeatures) {
+        if (feature.startsWith("Arc (Layer TOP_SILKSCREEN)")) {
+          Arc silkArc = new Arc();
+          silkArc.populateBXLElement(feature);
+          newElement = newElement
+              + silkArc.generateGEDAelement(0,-yOffset,1.0f);
+        } else if (feature.startsWith("Line")) {
+          SymbolPolyline symbolLine = new SymbolPolyline();
+          symbolLine.populateBXLElement(feature);
+          newElement = newElement
+              + "\n" + symbolLine.toString(0,-yOffset, context.symFormat);
+        } 
+      }
+
+      String newSymbolHeader = symbolHeader(context.symFormat)
+          + newElement; // we have created the header for the symbol
+      newElement = "";
+      String FPField = "";
+
+      // first, we see if there are devicedefs for this symbol
+      // mapping its pins onto footprint pads
+      //System.out.println("Requesting device defs for " +
+      //                   symbolName);
+      ArrayList<EagleDevice> symbolDeviceDefs = new ArrayList<EagleDevice>();
+      if (deviceSets != null) {
+        symbolDeviceDefs = deviceSets.supplyDevicesFor(symbolName);
+      }
 
-        // now we have a list of pins, we can calculate the offsets
-        // to justify the element in gschem, and justify the attribute
-        // fields.
-
-        // we may need to turn this off if converting entire schematics
-        // at some point in the future
-        if (!pins.empty()) {
-          xOffset = pins.minX();
-          yOffset = pins.minY()-200;  // includes bounding box
-          // spacing of ~ 200 takes care of the bounding box
-          textXOffset = pins.textRHS(); //??? broken for some reason
+      // we have two scenarios, the first is that we have symbols
+      // +/- pins defined but no pin mapping for
+      // them (= symbolDeviceDef)
+      // the second is we have 1 or more pin mappings defined for
+      // the symbol found
+      if (symbolDeviceDefs.size() == 0) {
+        // it seems we have no pin mappings applicable to the symbol
+        unmatched = true;
+        attributeFields.add("footprint=unknown");
+
+        context.resetSymbolTextAttributeOffsets();
+        // we now generate the text attribute fields for the current
+        // symbol
+        for (String attr : attributeFields) {
+          symAttributes = symAttributes
+              + SymbolText.BXLAttributeString(context, textXOffset, 0, attr);
         }
-        // additional bounding box extents are calculated by minY()
-
-        for (String feature : silkFeatures) {
-          if (feature.startsWith("Arc (Layer TOP_SILKSCREEN)")) {
-            Arc silkArc = new Arc();
-            silkArc.populateBXLElement(feature);
-            newElement = newElement
-                + silkArc.generateGEDAelement(0,-yOffset,1.0f);
-          } else if (feature.startsWith("Line")) {
-            SymbolPolyline symbolLine = new SymbolPolyline();
-            symbolLine.populateBXLElement(feature);
-            newElement = newElement
-                + "\n" + symbolLine.toString(0,-yOffset, symFormat);
-          } 
+
+        elData = "";
+        if (!pins.empty()) { // sometimes Eagle has rubbish symbols
+          // with no pins, so we test before we build the symbol
+          // note that we did not have a pin mapping we could apply
+          // so pin numbers will default to zero
+          elData = pins.toString(-xOffset,-yOffset, context)
+              //... header, and then
+              + "\n"
+              + pins.calculatedBoundingBox(0,0).toString(-xOffset,-yOffset, context.symFormat);
         }
+          
+        // add some attribute fields
+        newSymbol = newSymbolHeader + elData + symAttributes;
 
-        String newSymbolHeader = symbolHeader(symFormat)
-            + newElement; // we have created the header for the symbol
-        newElement = "";
-        String FPField = "";
-
-        // first, we see if there are devicedefs for this symbol
-        // mapping its pins onto footprint pads
-        //System.out.println("Requesting device defs for " +
-        //                   symbolName);
-        ArrayList<EagleDevice> symbolDeviceDefs 
-            = deviceSets.supplyDevicesFor(symbolName);
-
-        // we have two scenarios, the first is that we have symbols
-        // +/- pins defined but no pin mapping for
-        // them (= symbolDeviceDef)
-        // the second is we have 1 or more pin mappings defined for
-        // the symbol found
-        if (symbolDeviceDefs.size() == 0) {
-          // it seems we have no pin mappings applicable to the symbol
-          System.out.println("No matching footprint specified for: "
-                             + symbolName);
-          attributeFields.add("footprint=unknown");
-
-          SymbolText.resetSymbolTextAttributeOffsets();
-          // we now generate the text attribute fields for the current
+        // customise symbol filename to reflect applicable FP
+        elName = symbolName + ".sym";
+        
+        // we now queue the element to be written to a file
+        symbols.add(new String [] {elName, newSymbol});
+        
+        
+        silkFeatures.clear();
+        attributeFields.clear();
+        symAttributes = "";
+      
+      } else { // we get here if >0 symbolDeviceDefs
+        // TODO
+        // need to generate n symbols for n pin mappings
+        // also need to sort out FPName for each variant
+        // also need to sort out sane naming convention for
+        // the variants of the symbol
+        
+        for (int index = 0;
+             index < symbolDeviceDefs.size();
+             index++) {
+          if (deviceSets != null &&
+              deviceSets.containsSymbol(symbolName) ) {
+            //System.out.println("About to renumber pins for "
+            //                   + symbolName); 
+            if (!pins.empty()) { // sometimes Eagle has odd symbols
+              // for fiducials and so forth
+              pins.applyEagleDeviceDef(symbolDeviceDefs.get(index));
+              textXOffset = pins.textRHS(); // for text justification
+            } 
+            FPField = symbolDeviceDefs.get(index).supplyFPName();
+            attributeFields.add("footprint=" + FPField);
+            FPField = "_" + FPField;
+          } // start with the first device def to begin with
+          
+          // when batch converting, we avoid incrementing the
+          // justification of text from one symbol to the next, so 
+          // we reset the offset variable for each new symbol thusly
+          context.resetSymbolTextAttributeOffsets();
+          // we no generate the text attribute fields for the current
           // symbol
           for (String attr : attributeFields) {
             symAttributes = symAttributes
-                + SymbolText.BXLAttributeString(textXOffset, 0, attr);
+                + SymbolText.BXLAttributeString(context, textXOffset, 0, attr);
           }
-
+          
           elData = "";
           if (!pins.empty()) { // sometimes Eagle has rubbish symbols
             // with no pins, so we test before we build the symbol
-            // note that we did not have a pin mapping we could apply
-            // so pin numbers will default to zero
-            elData = pins.toString(-xOffset,-yOffset, symFormat)
+            elData = pins.toString(-xOffset,-yOffset, context)
                 //... header, and then
                 + "\n"
-                + pins.calculatedBoundingBox(0,0).toString(-xOffset,-yOffset, symFormat);
+                + pins.calculatedBoundingBox(0,0).toString(-xOffset,-yOffset, context.symFormat);
           }
-            
+          
           // add some attribute fields
           newSymbol = newSymbolHeader + elData + symAttributes;
-
           // customise symbol filename to reflect applicable FP
-          elName = symbolName + ".sym";
+          elName = symbolName + FPField + ".sym";
           
-          // we now write the element to a file
-          elementWrite(elName, newSymbol);
+          // we now queue the element to be written to a file
+          symbols.add(new String [] {elName, newSymbol});
           
-          // add the symbol to our list of converted elements
-          convertedFiles.add(elName);
-          
-          silkFeatures.clear();
+        
           attributeFields.clear();
           symAttributes = "";
-        
-        } else { // we get here if >0 symbolDeviceDefs
-          // TODO
-          // need to generate n symbols for n pin mappings
-          // also need to sort out FPName for each variant
-          // also need to sort out sane naming convention for
-          // the variants of the symbol
-          
-          for (int index = 0;
-               index < symbolDeviceDefs.size();
-               index++) {
-            if (deviceSets != null &&
-                deviceSets.containsSymbol(symbolName) ) {
-              //System.out.println("About to renumber pins for "
-              //                   + symbolName); 
-              if (!pins.empty()) { // sometimes Eagle has odd symbols
-                // for fiducials and so forth
-                pins.applyEagleDeviceDef(symbolDeviceDefs.get(index));
-                textXOffset = pins.textRHS(); // for text justification
-              } 
-              FPField = symbolDeviceDefs.get(index).supplyFPName();
-              attributeFields.add("footprint=" + FPField);
-              FPField = "_" + FPField;
-            } // start with the first device def to begin with
-            
-            // when batch converting, we avoid incrementing the
-            // justification of text from one symbol to the next, so 
-            // we reset the offset variable for each new symbol thusly
-            SymbolText.resetSymbolTextAttributeOffsets();
-            // we no generate the text attribute fields for the current
-            // symbol
-            for (String attr : attributeFields) {
-              symAttributes = symAttributes
-                  + SymbolText.BXLAttributeString(textXOffset, 0, attr);
-            }
-            
-            elData = "";
-            if (!pins.empty()) { // sometimes Eagle has rubbish symbols
-              // with no pins, so we test before we build the symbol
-              elData = pins.toString(-xOffset,-yOffset,symFormat)
-                  //... header, and then
-                  + "\n"
-                  + pins.calculatedBoundingBox(0,0).toString(-xOffset,-yOffset, symFormat);
-            }
-            
-            // add some attribute fields
-            newSymbol = newSymbolHeader + elData + symAttributes;
-            // customise symbol filename to reflect applicable FP
-            elName = symbolName + FPField + ".sym";
-            
-            // we now write the element to a file
-            elementWrite(elName, newSymbol);
-            
-            // add the symbol to our list of converted elements
-            convertedFiles.add(elName);
-          
-            attributeFields.clear();
-            symAttributes = "";
-          } // end of for loop for pin mappings
-          silkFeatures.clear();
-        } // end of else statement for >=1 pin mappings
-
-      }
+        } // end of for loop for pin mappings
+        silkFeatures.clear();
+      } // end of else statement for >=1 pin mappings
+      return symbols;
     }
-
-    List<String> footprintsExported
-        = Arrays.asList(Footprint.exportFootprints(LBRFile, footprints,
-                                                   fpFormat,
-                                                   magnificationRatio,
-                                                   exportPath,
-                                                   true, verbose));
-    convertedFiles.addAll(footprintsExported);    
-    return convertedFiles.toArray(new String[convertedFiles.size()]);
-  } 
+  }
 
 }
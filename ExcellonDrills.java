@@ -0,0 +1,250 @@
+// ExcellonDrills.java v1.0
+// Copyright (C) 2022 Erich S. Heinzle, a1039181@gmail.com
+//
+// loads the holes of an Excellon drill file into a spatial hash, so
+// that the Plotter can find the hole, if any, drilled through each pad
+// it flashes without searching through all of the holes
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful, but
+// WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// An Excellon file starts with a header, M48, defining the units and
+// the tools, i.e. T1C0.8, which ends with a % or M95. The body then
+// selects tools, T1, and drills holes, X1.27Y-2.54, until M30.
+// Coordinates without a decimal point use the implied format of the
+// units, 2.4 for inches and 3.3 for millimetres, with LZ meaning the
+// leading zeros are kept, and TZ the trailing zeros. Coordinates are
+// modal, so X or Y may be omitted if unchanged. Routed slots and
+// canned cycles are not supported, and are skipped.
+//
+// Holes are kept in nanometres, with the gerber y axis, and hashed
+// into 1mm square cells, so finding the holes in a pad only looks at
+// the few cells the pad covers.
+
+public class ExcellonDrills {
+
+  static final long CELL_SIZE = 1000000; // 1mm
+
+  private long [] xs = new long[64];
+  private long [] ys = new long[64];
+  private long [] diameters = new long[64];
+  private int holeCount = 0;
+  private HashMap<Long,ArrayList<Integer>> cells = new HashMap<Long,ArrayList<Integer>>();
+
+  // the parser state
+  private boolean metric = false;
+  private boolean leadingZeros = false;
+  private HashMap<Integer,Long> tools = new HashMap<Integer,Long>();
+  private long toolDiameter = 0;
+  private double x = 0;
+  private double y = 0;
+
+  public ExcellonDrills() {
+  }
+
+  public ExcellonDrills(Reader in) throws IOException {
+    load(in);
+  }
+
+  public int holeCount() {
+    return holeCount;
+  }
+
+  // loads another drill file, i.e. plated and unplated holes
+  // are often supplied as two files
+  public void load(Reader in) throws IOException {
+    BufferedReader drillData = new BufferedReader(in);
+    boolean header = false;
+    String line;
+    while ((line = drillData.readLine()) != null) {
+      line = line.trim();
+      if (line.length() == 0 || line.startsWith(";")) {
+        continue;
+      }
+      if (line.equals("M48")) {
+        header = true;
+      } else if (header && (line.equals("%") || line.equals("M95"))) {
+        header = false;
+      } else if (line.startsWith("M30") || line.startsWith("M00")) {
+        break;
+      } else if (line.startsWith("METRIC") || line.startsWith("M71")
+                 || line.startsWith("G71")) {
+        metric = true;
+        zeros(line);
+      } else if (line.startsWith("INCH") || line.startsWith("M72")
+                 || line.startsWith("G70")) {
+        metric = false;
+        zeros(line);
+      } else if (line.startsWith("T")) {
+        tool(line, header);
+      } else if (!header && (line.startsWith("X") || line.startsWith("Y"))) {
+        hole(line);
+      }
+    }
+  }
+
+  private void zeros(String line) {
+    if (line.indexOf(",LZ") != -1) {
+      leadingZeros = true;
+    } else if (line.indexOf(",TZ") != -1) {
+      leadingZeros = false;
+    }
+  }
+
+  // T1C0.8 defines a tool, and T1 on its own selects it
+  private void tool(String line, boolean header) {
+    int end = 1;
+    while (end < line.length() && Character.isDigit(line.charAt(end))) {
+      end++;
+    }
+    if (end == 1) {
+      return;
+    }
+    int number = Integer.parseInt(line.substring(1, end));
+    int diameterIndex = line.indexOf('C', end);
+    if (diameterIndex != -1) {
+      int diameterEnd = diameterIndex + 1;
+      while (diameterEnd < line.length()
+             && (Character.isDigit(line.charAt(diameterEnd))
+                 || line.charAt(diameterEnd) == '.')) {
+        diameterEnd++;
+      }
+      double diameter = 0;
+      try {
+        diameter = Double.parseDouble(line.substring(diameterIndex + 1, diameterEnd));
+      } catch (NumberFormatException e) {
+        System.out.println("Excellon: skipping tool definition " + line);
+      }
+      tools.put(number, nanometres(diameter));
+    }
+    if (!header || diameterIndex == -1) {
+      Long diameter = tools.get(number);
+      toolDiameter = (diameter == null) ? 0 : diameter.longValue();
+    }
+  }
+
+  private void hole(String line) {
+    if (line.indexOf("G85") != -1) {
+      return; // slot
+    }
+    int yIndex = line.indexOf('Y');
+    if (line.startsWith("X")) {
+      x = coordinate(line.substring(1, (yIndex == -1) ? line.length() : yIndex));
+    }
+    if (yIndex != -1) {
+      y = coordinate(line.substring(yIndex + 1));
+    }
+    if (toolDiameter > 0) {
+      addHole(nanometres(x), nanometres(y), toolDiameter);
+    }
+  }
+
+  private double coordinate(String number) {
+    if (number.indexOf('.') != -1) {
+      return Double.parseDouble(number);
+    }
+    boolean negative = number.startsWith("-");
+    if (negative || number.startsWith("+")) {
+      number = number.substring(1);
+    }
+    int integerDigits = metric ? 3 : 2;
+    int decimals = metric ? 3 : 4;
+    if (leadingZeros) {
+      while (number.length() < integerDigits + decimals) {
+        number = number + "0";
+      }
+    }
+    double value = Long.parseLong(number)/Math.pow(10, decimals);
+    return negative ? -value : value;
+  }
+
+  private long nanometres(double value) {
+    if (metric) {
+      return (long)(value*1000000);
+    }
+    return (long)(value*25400000);
+  }
+
+  public void addHole(long holeX, long holeY, long diameter) {
+    if (holeCount == xs.length) {
+      long [] newXs = new long[2*holeCount];
+      long [] newYs = new long[2*holeCount];
+      long [] newDiameters = new long[2*holeCount];
+      System.arraycopy(xs, 0, newXs, 0, holeCount);
+      System.arraycopy(ys, 0, newYs, 0, holeCount);
+      System.arraycopy(diameters, 0, newDiameters, 0, holeCount);
+      xs = newXs;
+      ys = newYs;
+      diameters = newDiameters;
+    }
+    xs[holeCount] = holeX;
+    ys[holeCount] = holeY;
+    diameters[holeCount] = diameter;
+    Long key = key(cell(holeX), cell(holeY));
+    ArrayList<Integer> cell = cells.get(key);
+    if (cell == null) {
+      cell = new ArrayList<Integer>();
+      cells.put(key, cell);
+    }
+    cell.add(holeCount);
+    holeCount++;
+  }
+
+  // the diameter of the hole closest to the centre of the pad, among
+  // those lying within it which are smaller than it, or 0 if none
+  public long drillFor(long padX, long padY, long width, long height) {
+    long best = 0;
+    double bestDistance = Double.MAX_VALUE;
+    for (long cx = cell(padX - width/2); cx <= cell(padX + width/2); cx++) {
+      for (long cy = cell(padY - height/2); cy <= cell(padY + height/2); cy++) {
+        ArrayList<Integer> cell = cells.get(key(cx, cy));
+        if (cell == null) {
+          continue;
+        }
+        for (int hole : cell) {
+          long dx = xs[hole] - padX;
+          long dy = ys[hole] - padY;
+          if (Math.abs(dx) <= width/2 && Math.abs(dy) <= height/2
+              && diameters[hole] < Math.min(width, height)) {
+            double distance = (double)dx*dx + (double)dy*dy;
+            if (distance < bestDistance) {
+              bestDistance = distance;
+              best = diameters[hole];
+            }
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  private static long cell(long coordinate) {
+    long cell = coordinate/CELL_SIZE;
+    if (coordinate < 0 && cell*CELL_SIZE != coordinate) {
+      cell--; // round towards negative infinity
+    }
+    return cell;
+  }
+
+  private static Long key(long cx, long cy) {
+    return Long.valueOf((cx << 32) ^ (cy & 0xffffffffL));
+  }
+
+}
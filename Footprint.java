@@ -40,9 +40,6 @@ import java.util.ArrayList;
 
 public class Footprint
 {
-  static ArrayList<String> padStackHashes = new ArrayList<String>();
-  static ArrayList<String> padStackDefs = new ArrayList<String>();
-
   String footprintName = "newFootprint";
   int padStackProtoCount = 0;
   String passedString = "";
@@ -51,6 +48,20 @@ public class Footprint
   ArrayList<FootprintElementArchetype> footprintElements = new ArrayList<FootprintElementArchetype>();
   ArrayList<Pad> pads = new ArrayList<Pad>();
 
+  // the elements are also sorted by lihata layer as they are added,
+  // so that each layer can be exported without searching for them.
+  // Text is kept apart, since it follows the other elements
+  private static final int TOP_SILK = 0;
+  private static final int TOP_COPPER = 1;
+  private static final int BOTTOM_COPPER = 2;
+  private static final int BOTTOM_SILK = 3;
+  private static final int TOP_MASK = 4;
+  private static final int BOTTOM_MASK = 5;
+  private static final int LIHATA_LAYERS = 6;
+
+  private ArrayList<ArrayList<FootprintElementArchetype>> layerElements = lihataLayerBuckets();
+  private ArrayList<ArrayList<FootprintElementArchetype>> layerText = lihataLayerBuckets();
+
   Boolean metricSystem = false;   // this will be changed to "true", if needed,
   // with parsing in due course
 
@@ -96,24 +107,75 @@ public class Footprint
   }
 
   public void add(Arc a) {
-    footprintElements.add(a);
+    addElement(a);
   }
   
   public void add(Circle c) {
-    footprintElements.add(c);
+    addElement(c);
   }
 
   public void add(DrawnElement de) {
-    footprintElements.add(de);
+    addElement(de);
   }
  
   public void add(Pad p) {
-    footprintElements.add(p);
+    addElement(p);
     pads.add(p);
   }
 
   public void add(PolyPour pp) {
-    footprintElements.add(pp);
+    addElement(pp);
+  }
+
+  // adds an element taken from another footprint, i.e. when the
+  // layers of a set of gerbers are merged into a single footprint
+  public void add(FootprintElementArchetype fea) {
+    if (fea.isPad()) {
+      add((Pad)fea);
+    } else {
+      addElement(fea);
+    }
+  }
+
+  private void addElement(FootprintElementArchetype fea) {
+    footprintElements.add(fea);
+    addToLayers(fea, layerElements);
+  }
+
+  private void addText(FootprintElementArchetype fea) {
+    moduleTextDescriptors.add(fea);
+    addToLayers(fea, layerText);
+  }
+
+  private static ArrayList<ArrayList<FootprintElementArchetype>> lihataLayerBuckets() {
+    ArrayList<ArrayList<FootprintElementArchetype>> buckets
+        = new ArrayList<ArrayList<FootprintElementArchetype>>(LIHATA_LAYERS);
+    for (int layer = 0; layer < LIHATA_LAYERS; layer++) {
+      buckets.add(new ArrayList<FootprintElementArchetype>());
+    }
+    return buckets;
+  }
+
+  private static void addToLayers(FootprintElementArchetype fea,
+                                  ArrayList<ArrayList<FootprintElementArchetype>> buckets) {
+    if (fea.isTop()) {
+      buckets.get(TOP_SILK).add(fea);
+    }
+    if (fea.isTopCopper()) {
+      buckets.get(TOP_COPPER).add(fea);
+    }
+    if (fea.isBottomCopper()) {
+      buckets.get(BOTTOM_COPPER).add(fea);
+    }
+    if (fea.isBottom()) {
+      buckets.get(BOTTOM_SILK).add(fea);
+    }
+    if (fea.isTopMask()) {
+      buckets.get(TOP_MASK).add(fea);
+    }
+    if (fea.isBottomMask()) {
+      buckets.get(BOTTOM_MASK).add(fea);
+    }
   }
 
   
@@ -176,31 +238,31 @@ public class Footprint
                   {
                     FootprintHeader fph = new FootprintHeader();
                     fph.populateKicadElement(trimmedString, metricSystem);
-                    moduleTextDescriptors.add(fph);
+                    addText(fph);
                   }
                 else if (tokens[0].startsWith("T") || tokens[0].startsWith("fp_text"))
                   {
                     FootprintText fpt = new FootprintText();
                     fpt.populateKicadElement(trimmedString, metricSystem);
-                    moduleTextDescriptors.add(fpt);
+                    addText(fpt);
                   }
                 else if (tokens[0].startsWith("DS") || tokens[0].startsWith("fp_line"))
                   {
                     DrawnElement de = new DrawnElement();
                     de.populateKicadElement(trimmedString, metricSystem);
-                    footprintElements.add(de);
+                    addElement(de);
                   }
                 else if (tokens[0].startsWith("DC") || tokens[0].startsWith("fp_circle"))
                   {
                     Circle c = new Circle();
                     c.populateKicadElement(trimmedString, metricSystem);
-                    footprintElements.add(c);
+                    addElement(c);
                   }
                 else if (tokens[0].startsWith("DA") || tokens[0].startsWith("fp_arc"))
                   {
                     Arc a = new Arc();
                     a.populateKicadElement(trimmedString, metricSystem);
-                    footprintElements.add(a);
+                    addElement(a);
                   }
                 else if (tokens[0].startsWith("pad"))
                   {  // we have identified a pad definition in the module
@@ -525,10 +587,6 @@ public class Footprint
     return shapes;
   }
 
-  public static int padStackRef(Pad p) {
-    return padStackHashes.indexOf(p.pinPadHash());
-  }
-
   private String lihataSubcHeader() {
     return "li:pcb-rnd-subcircuit-v6 {\n ha:subc.4 {\n"; 
   }
@@ -539,181 +597,140 @@ public class Footprint
         + "  }\n";
   }
 
-  private String lihataPadstacks() {
-    String padStacks = "";
+  private void writeLihataPadstacks(Appendable out, ConversionContext context) throws IOException {
+    out.append("   li:padstack_prototypes {\n");
     for (Pad p : pads)
       {
-        if (!padStackHashes.contains(p.pinPadHash())) {
-          padStackHashes.add(p.pinPadHash());			
-          padStacks = padStacks + padStackBuilder(p);
+        if (context.padStacks.add(p.padKey())) {
+          out.append(padStackBuilder(p));
         } // else pad stack is a known quantity
       }
-    return "   li:padstack_prototypes {\n"
-	+ padStacks
-	+ "   }\n";
+    out.append("   }\n");
   }
 
-  private String lihataPadStackObjects() {
-    String padStacks = "";
+  private void writeLihataPadStackObjects(Appendable out, ConversionContext context) throws IOException {
+    out.append("   li:objects {\n");
     for (Pad p : pads)
       {
-          padStacks = padStacks + p.generateElement(0, 0, 1.0f, "pcb-rnd");
-      }
-    return "   li:objects {\n"
-	+ padStacks
-	+ "   }\n";
-  }
-
-  private String lihataTopObjects() {
-    String top = "";
-    for (FootprintElementArchetype fea : footprintElements)
-      {
-        if (fea.isTop()) {
-          top = top + fea.generateElement(0, 0, 1.0f, "pcb-rnd");
-        }
-      }
-    for (FootprintElementArchetype fea : moduleTextDescriptors)
-      {
-        if (fea.isTop()) {
-          top = top + fea.generateElement(0, 0, 1.0f, "pcb-rnd");
-        }
-      }
-    return "     li:objects {\n"
-	+ top
-	+ "     }\n";
-  }
-
-  private String lihataTopCopperObjects() {
-    String top = "";
-    for (FootprintElementArchetype fea : footprintElements)
-      {
-        if (fea.isTopCopper()) {
-          top = top + fea.generateElement(0, 0, 1.0f, "pcb-rnd");
-        }
+        p.writeElement(out, 0, 0, 1.0f, "pcb-rnd", context);
       }
-    for (FootprintElementArchetype fea : moduleTextDescriptors)
-      {
-        if (fea.isTopCopper()) {
-          top = top + fea.generateElement(0, 0, 1.0f, "pcb-rnd");
-        }
-      }
-    return "     li:objects {\n"
-	+ top
-	+ "     }\n";
+    out.append("   }\n");
   }
 
-  private String lihataBottomCopperObjects() {
-    String bottom = "";
-    for (FootprintElementArchetype fea : footprintElements)
+  private void writeLihataObjects(Appendable out, int layer, ConversionContext context) throws IOException {
+    out.append("     li:objects {\n");
+    for (FootprintElementArchetype fea : layerElements.get(layer))
       {
-        if (fea.isBottomCopper()) {
-          bottom = bottom + fea.generateElement(0, 0, 1.0f, "pcb-rnd");
-        }
+        fea.writeElement(out, 0, 0, 1.0f, "pcb-rnd", context);
       }
-    for (FootprintElementArchetype fea : moduleTextDescriptors)
+    for (FootprintElementArchetype fea : layerText.get(layer))
       {
-        if (fea.isBottomCopper()) {
-          bottom = bottom + fea.generateElement(0, 0, 1.0f, "pcb-rnd");
-        }
+        fea.writeElement(out, 0, 0, 1.0f, "pcb-rnd", context);
       }
-    return "     li:objects {\n"
-	+ bottom
-	+ "     }\n";
-  }
-  
-  private String lihataBottomObjects() {
-    String bottom = "";
-    for (FootprintElementArchetype fea : footprintElements)
-      {
-        if (fea.isBottom()) {
-          bottom = bottom + fea.generateElement(0, 0, 1.0f, "pcb-rnd");
-        }
-      }
-    for (FootprintElementArchetype fea : moduleTextDescriptors)
-      {
-        if (fea.isBottom()) {
-          bottom = bottom + fea.generateElement(0, 0, 1.0f, "pcb-rnd");
-        }
-      }
-    return "     li:objects {\n"
-	+ bottom
-	+ "     }\n";
-  }
-
-  private String lihataLayers() {
-    return "   li:layers {\n"
-	+ "    ha:top-silk {\n     lid = 0\n     ha:type {\n      silk = 1\n      top = 1\n     }\n"
-	+ lihataTopObjects()
-	+ "     ha:combining {\n      auto = 1\n     }\n    }\n"
-	+ "    ha:top-sig {\n     lid = 1\n     ha:type {\n      copper = 1\n      top = 1\n     }\n"
-	+ lihataTopCopperObjects()
-	+ "     ha:combining {\n      auto = 1\n     }\n    }\n"
-        + "    ha:bottom-sig {\n     lid = 2\n     ha:type {\n      copper = 1\n      bottom = 1\n     }\n"
-	+ lihataBottomCopperObjects()
-	+ "     ha:combining {\n      auto = 1\n     }\n    }\n"
-
-	+ "    ha:bottom-silk {\n     lid = 3\n     ha:type {\n      silk = 1\n      bottom = 1\n     }\n"
-	+ lihataBottomObjects()
-	+ "     ha:combining {\n      auto = 1\n     }\n    }\n"
+    out.append("     }\n");
+  }
+
+  private void writeLihataLayers(Appendable out, ConversionContext context) throws IOException {
+    out.append("   li:layers {\n"
+	+ "    ha:top-silk {\n     lid = 0\n     ha:type {\n      silk = 1\n      top = 1\n     }\n");
+    writeLihataObjects(out, TOP_SILK, context);
+    out.append("     ha:combining {\n      auto = 1\n     }\n    }\n"
+	+ "    ha:top-sig {\n     lid = 1\n     ha:type {\n      copper = 1\n      top = 1\n     }\n");
+    writeLihataObjects(out, TOP_COPPER, context);
+    out.append("     ha:combining {\n      auto = 1\n     }\n    }\n"
+        + "    ha:bottom-sig {\n     lid = 2\n     ha:type {\n      copper = 1\n      bottom = 1\n     }\n");
+    writeLihataObjects(out, BOTTOM_COPPER, context);
+    out.append("     ha:combining {\n      auto = 1\n     }\n    }\n"
+
+	+ "    ha:bottom-silk {\n     lid = 3\n     ha:type {\n      silk = 1\n      bottom = 1\n     }\n");
+    writeLihataObjects(out, BOTTOM_SILK, context);
+    out.append("     ha:combining {\n      auto = 1\n     }\n    }\n"
 	+ "    ha:subc-aux {\n     lid = 4\n     ha:type {\n      top = 1\n      misc = 1\n"
-	+ "      virtual = 1\n     }\n     li:objects {\n      ha:line." + FootprintElementArchetype.lineCount++
+	+ "      virtual = 1\n     }\n     li:objects {\n      ha:line." + context.lineCount++
 	+ "14 {\n"
 	+ "       clearance = 0.0\n       y2 = 0.0\n       thickness = 0.1mm\n"
 	+ "       ha:attributes {\n        subc-role = pnp-origin\n       }\n       x1 = 0.0\n"
 	+ "       x2 = 0.0\n       ha:flags {\n       }\n       y1 = 0.0\n      }\n"
-	+ "      ha:line." + FootprintElementArchetype.lineCount++ + " {\n       clearance = 0.0\n       y2 = 0.0\n"
+	+ "      ha:line." + context.lineCount++ + " {\n       clearance = 0.0\n       y2 = 0.0\n"
 	+ "       thickness = 0.1mm\n       ha:attributes {\n        subc-role = origin\n"
 	+ "       }\n       x1 = 0.0\n       x2 = 0.0\n       ha:flags {\n       }\n"
-	+ "       y1 = 0.0\n      }\n      ha:line." + FootprintElementArchetype.lineCount++
+	+ "       y1 = 0.0\n      }\n      ha:line." + context.lineCount++
 	+ " {\n       clearance = 0.0\n       y2 = 0.0\n"
 	+ "       thickness = 0.1mm\n       ha:attributes {\n        subc-role = x\n       }\n       x1 = 0.0\n"
 	+ "       x2 = 1.0mm\n       ha:flags {\n       }\n       y1 = 0.0\n      }\n      "
-	+ "ha:line." + FootprintElementArchetype.lineCount++ + " {\n"
+	+ "ha:line." + context.lineCount++ + " {\n"
 	+ "       clearance = 0.0\n       y2 = 1.0mm\n       thickness = 0.1mm\n       ha:attributes {\n"
 	+ "        subc-role = y\n       }\n       x1 = 0.0\n       x2 = 0.0\n       ha:flags {\n"
-	+ "       }\n       y1 = 0.0\n      }\n     }\n     ha:combining {\n     }\n    }\n"
-	+ "   }\n";
+	+ "       }\n       y1 = 0.0\n      }\n     }\n     ha:combining {\n     }\n    }\n");
+    // mask layers are only needed for drawn mask openings, since
+    // the padstacks already have their own mask shapes
+    if (layerElements.get(TOP_MASK).size() + layerText.get(TOP_MASK).size() > 0) {
+      out.append("    ha:top-mask {\n     lid = 5\n     ha:type {\n      mask = 1\n      top = 1\n     }\n");
+      writeLihataObjects(out, TOP_MASK, context);
+      out.append("     ha:combining {\n      sub = 1\n      auto = 1\n     }\n    }\n");
+    }
+    if (layerElements.get(BOTTOM_MASK).size() + layerText.get(BOTTOM_MASK).size() > 0) {
+      out.append("    ha:bottom-mask {\n     lid = 6\n     ha:type {\n      mask = 1\n      bottom = 1\n     }\n");
+      writeLihataObjects(out, BOTTOM_MASK, context);
+      out.append("     ha:combining {\n      sub = 1\n      auto = 1\n     }\n    }\n");
+    }
+    out.append("   }\n");
   }
 
-  private String lihataSubcData() {
-    return "  ha:data {\n"
-	+ lihataPadstacks() + lihataPadStackObjects() + lihataLayers()
-	+ "  }\n"
+  private void writeLihataSubcData(Appendable out, ConversionContext context) throws IOException {
+    out.append("  ha:data {\n");
+    writeLihataPadstacks(out, context);
+    writeLihataPadStackObjects(out, context);
+    writeLihataLayers(out, context);
+    out.append("  }\n"
 	+ "  uid = kazsgcWF3uqvvuDCYMsAAAAB\n  ha:flags {\n"
-	+ "  }\n";
+	+ "  }\n");
   }
 
   private String lihataSubcFooter() {
     return " }\n}\n"; 
   }
 
-  private String lihataSubc() {
+  private void writeLihataSubc(Appendable out, ConversionContext context) throws IOException {
     padStackProtoCount = 0; // need to reset it if converting > 1 footprint
-    padStackHashes.clear();
-    return lihataSubcHeader() + lihataSubcAttributes() + lihataSubcData() + lihataSubcFooter();
+    context.padStacks.clear();
+    out.append(lihataSubcHeader()).append(lihataSubcAttributes());
+    writeLihataSubcData(out, context);
+    out.append(lihataSubcFooter());
   }
 
-  public String generateFootprint(float magnificationRatio, String format)
+  public String generateFootprint(float magnificationRatio, ConversionContext context)
   {
+    StringBuilder assembledElement = new StringBuilder();
+    try {
+      writeFootprint(assembledElement, magnificationRatio, context);
+    } catch (IOException e) {
+      // appending to a StringBuilder does not throw
+    }
+    return assembledElement.toString();
+  }
+
+  // the footprint is written out one element at a time, so that
+  // large footprints are never held in memory as a single String
+  public void writeFootprint(Appendable out, float magnificationRatio, ConversionContext context)
+      throws IOException
+  {
+    String format = context.fpFormat;
     // System.out.println("About to export footprint...");
-    String assembledElement = "";
     if (format.equals("pcb")) {
-      assembledElement = licenceText1 + footprintName + licenceText2;
+      out.append(licenceText1).append(footprintName).append(licenceText2);
       if (pads.size() > 0)
       	{
-          assembledElement = assembledElement + 
-              clearanceWarningNotice1 + clearanceWarningNotice2 ;
+          out.append(clearanceWarningNotice1).append(clearanceWarningNotice2);
       	}
 
       if (metricSystem)
       	{
-          assembledElement = assembledElement +
-              "# Kicad module units: mm\n";
+          out.append("# Kicad module units: mm\n");
       	}
       else
       	{
-          assembledElement = assembledElement +
-              "# Kicad module units: 0.1 mil\n";
+          out.append("# Kicad module units: 0.1 mil\n");
       	}
 
       // we start by generating a generic gEDA footprint Element[...] field
@@ -729,22 +746,20 @@ public class Footprint
 
       if (moduleTextDescriptors.size() > 0)
       	{
-          gEDAfootprintElementField = moduleTextDescriptors.get(0).generateElement(0,0, magnificationRatio, "pcb");
+          gEDAfootprintElementField = moduleTextDescriptors.get(0).generateElement(0,0, magnificationRatio, "pcb", context);
       	}
 
-      assembledElement = assembledElement +
-          ("# Footprint = module name: " + footprintName + "\n" +
-           "# Pad count: " + pads.size() + "\n#\n" +
-           gEDAfootprintElementField );
+      out.append("# Footprint = module name: " + footprintName + "\n" +
+                 "# Pad count: " + pads.size() + "\n#\n" +
+                 gEDAfootprintElementField);
 
       for (FootprintElementArchetype fea : footprintElements)
       	{
-          assembledElement = assembledElement +
-              fea.generateElement(xOffset,yOffset,magnificationRatio, format);
+          fea.writeElement(out, xOffset, yOffset, magnificationRatio, format, context);
       	}
-      return assembledElement + ")";
+      out.append(")");
     } else {
-      return lihataSubc();
+      writeLihataSubc(out, context);
     }
   }
 
@@ -759,7 +774,7 @@ public class Footprint
   }
 
 ///////////////////////////////////////////////////////////////////////
-  public static String[] exportFootprints(String libraryName, ArrayList<Footprint> footprints, String format,
+  public static String[] exportFootprints(String libraryName, ArrayList<Footprint> footprints, ConversionContext context,
                                           float magnificationRatio, String convertedFootprintPath, boolean HTMLsummary,
                                           boolean verbose) throws IOException {
     // we can now step through the array of footprints
@@ -767,6 +782,9 @@ public class Footprint
     // one to a module_name.fp, and optionally create a gedasymbols.org
     // compatible HTML segment for inclusion in a user index 
 
+    // within the conversion's own output directory, if it has one
+    convertedFootprintPath = context.outputDir + convertedFootprintPath;
+
     ArrayList<String> convertedFiles = new ArrayList<String>();
     String defaultLibraryName = "Converted library: ";
     String footprintFileName = "";
@@ -779,7 +797,7 @@ public class Footprint
     for (Footprint f : footprints) 
       {
       // we generate a string containing the GEDA footprint filename
-        footprintFileName = f.generateFootprintFilename(format);
+        footprintFileName = f.generateFootprintFilename(context.fpFormat);
         htmlSummaryFileName = footprintFileName + ".html";
 
         // we then append a listing for this particular footprint
@@ -797,20 +815,49 @@ public class Footprint
             System.out.println(footprintFileName);
           }
         
-        // a String variable to contain the footprint description
-        
-        String footprintData = "";
-        footprintData = footprintData +
-            f.generateFootprint(magnificationRatio, format);
-        
-        if (verbose)
-          {
-            System.out.println(footprintData);
-            // and we now use the toString method to return the module text
-            System.out.println("\n\n" + f + "\n\n");
+        // the footprint description is written straight to the file,
+        // unless we also need a copy of it for the console
+        BufferedWriter elementOutput = null;
+        try {
+          elementOutput = elementWriter(convertedFootprintPath + footprintFileName);
+          if (verbose)
+            {
+              StringBuilder footprintData = new StringBuilder();
+              f.writeFootprint(footprintData, magnificationRatio, context);
+              System.out.println(footprintData);
+              // and we now use the toString method to return the module text
+              System.out.println("\n\n" + f + "\n\n");
+              elementOutput.append(footprintData);
+            }
+          else
+            {
+              f.writeFootprint(elementOutput, magnificationRatio, context);
+            }
+          elementOutput.newLine();
+        } catch(IOException e) {
+          System.out.println("There was an error saving: "
+                             + convertedFootprintPath + footprintFileName);
+          System.out.println(e);
+        } finally {
+          if (elementOutput != null) {
+            elementOutput.close();
           }
-        elementWrite(convertedFootprintPath + footprintFileName, footprintData);
+        }
         convertedFiles.add(footprintFileName);
+
+        // with a thumbnail alongside, for browsing the library
+        if (context.previews) {
+          String previewFileName = f.footprintName + ".png";
+          try {
+            if (FootprintPreview.write(f, convertedFootprintPath + previewFileName)) {
+              convertedFiles.add(previewFileName);
+            }
+          } catch(IOException e) {
+            System.out.println("There was an error saving: "
+                               + convertedFootprintPath + previewFileName);
+            System.out.println(e);
+          }
+        }
       }
 
   
@@ -837,9 +884,9 @@ public class Footprint
   public static void elementWrite(String elementName,
                                   String data) throws IOException {
     try {
-      File newElement = new File(elementName);
-      PrintWriter elementOutput = new PrintWriter(newElement);
-      elementOutput.println(data);
+      BufferedWriter elementOutput = elementWriter(elementName);
+      elementOutput.write(data);
+      elementOutput.newLine();
       elementOutput.close();
     } catch(Exception e) {
       System.out.println("There was an error saving: "
@@ -847,6 +894,12 @@ public class Footprint
       System.out.println(e);
     }
   }
+
+  // elements are written through a buffer, and then a FileWriter
+  // using the platform default encoding, as PrintWriter did
+  public static BufferedWriter elementWriter(String elementName) throws IOException {
+    return new BufferedWriter(new FileWriter(new File(elementName)));
+  }
 /////////////////////////////////////////////////////
   private long convertToNanometres(float rawValue, boolean metricSystem)
   {
@@ -23,6 +23,7 @@
 //    translate2coralEDA, translate2geda Copyright (C) 2015, 2019
 //    Erich S. Heinzle a1039181@gmail.com
 
+import java.io.IOException;
 
 public class FootprintElementArchetype
 {
@@ -30,13 +31,6 @@ public class FootprintElementArchetype
   long xOffsetNm = 0;
   long yOffsetNm = 0;
 
-  static int lineCount = 0;
-  static int arcCount = 0;
-  static int textCount = 0;
-  static int padStackProtos = 0;
-  static int padstackInstances = 0;
-  static int pourCount = 0;
-
   public long Xposition()
   {
     return xOffsetNm;
@@ -64,11 +58,25 @@ public class FootprintElementArchetype
     return("x: " + xOffsetNm + ", y: " + yOffsetNm);
   }
 
-  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format)
+  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format, ConversionContext context)
   {
     return "";
   }
 
+  // appends the element to a footprint being written out; elements
+  // are small, so the String from generateElement() is good enough
+  public void writeElement(Appendable out, long xOffset, long yOffset, float magnificationRatio,
+                           String format, ConversionContext context) throws IOException
+  {
+    out.append(generateElement(xOffset, yOffset, magnificationRatio, format, context));
+  }
+
+  // adds the element's outline to a footprint preview; elements
+  // which aren't drawn in previews add nothing
+  public void addPreviewShapes(FootprintPreview preview)
+  {
+  }
+
   public void populateElement(String moduleDefinition, boolean metric)
   {
     System.out.println("You're not supposed to see this.");		
@@ -99,6 +107,19 @@ public class FootprintElementArchetype
     return false;
   }
 
+  public boolean isTopMask() {
+    return false;
+  }
+
+  public boolean isBottomMask() {
+    return false;
+  }
+
+  // moves the element to another kicad layer, i.e. when the gerber it
+  // was converted from turns out to be a bottom or silkscreen layer
+  public void setKicadLayer(int layer) {
+  }
+
   public boolean isInternal() {
     return false;
   }
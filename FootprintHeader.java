@@ -135,8 +135,8 @@ public class FootprintHeader extends FootprintElementArchetype
       }
   }
 
-  public String lihataText(long xOffset, long yOffset, float magnificationRatio) {
-    return "      ha:text." + textCount++ + " {\n       scale = " + (int)(100*magnificationRatio) + 
+  public String lihataText(long xOffset, long yOffset, float magnificationRatio, ConversionContext context) {
+    return "      ha:text." + context.textCount++ + " {\n       scale = " + (int)(100*magnificationRatio) + 
         "\n       thickness = " + kicadPenWidthNm + "nm\n" +
         "       x = " + (long)((textxCoordNm + xOffsetNm)*magnificationRatio) + "nm\n" +
         "       y = " + (long)((textyCoordNm + yOffsetNm)*magnificationRatio) + "nm\n" +
@@ -150,12 +150,12 @@ public class FootprintHeader extends FootprintElementArchetype
     return true; // for refdes, value etc...
   }
 
-  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format)
+  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format, ConversionContext context)
   {
     if (format.equals("pcb")) {
       return generateGEDAtextField(xOffset, yOffset);
     } else {
-      return lihataText(xOffset, yOffset, magnificationRatio);
+      return lihataText(xOffset, yOffset, magnificationRatio, context);
     }
   }
 
@@ -0,0 +1,350 @@
+// FootprintPreview.java v1.0
+// Copyright (C) 2022 Erich S. Heinzle, a1039181@gmail.com
+//
+// renders a small PNG thumbnail of a converted footprint without any
+// AWT drawing, so that it works headless, by splitting the image into
+// tiles which are rasterised in parallel on a fork-join pool
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful, but
+// WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.imageio.ImageIO;
+
+// Each footprint element adds its outline to the preview as one or more
+// simple shapes, i.e. lines with round ends, rotated rectangles and
+// polygons, in nanometres with the layout's y axis. Arcs and circles are
+// drawn as a series of short lines. The image is scaled to fit the
+// extent of the shapes, and each pixel takes the colour of the last
+// shape covering its centre, with the layers drawn from the bottom of
+// the board up. Solder mask and text are not drawn.
+//
+// Tiles only test the shapes overlapping them, and write to their own
+// part of the pixel buffer, so they need no locking.
+
+public class FootprintPreview {
+
+  static final int SIZE = 256;   // the longest side of the image, in pixels
+  static final int MARGIN = 8;   // pixels
+  static final int TILE = 64;    // tiles this size or smaller aren't split
+
+  // the layers, in the order they are drawn
+  static final int BOTTOM_COPPER = 0;
+  static final int BOTTOM_SILK = 1;
+  static final int TOP_COPPER = 2;
+  static final int HOLES = 3;
+  static final int TOP_SILK = 4;
+
+  static final int BACKGROUND = 0xff202020;
+  private static final int [] layerColours = {
+    0xff3d6fb6, 0xff8c8c8c, 0xffc87137, BACKGROUND, 0xfff0f0f0
+  };
+
+  private static final int CAPSULE = 0;
+  private static final int BOX = 1;
+  private static final int OUTLINE = 2;
+
+  private static class Shape {
+    int kind;
+    int layer;
+    double minX;
+    double minY;
+    double maxX;
+    double maxY;
+    double x1;                 // capsule end points, or the box centre
+    double y1;
+    double x2;
+    double y2;
+    double radius;             // capsules
+    double halfWidth;          // boxes
+    double halfHeight;
+    double cos;
+    double sin;
+    double [] xs;              // outlines
+    double [] ys;
+
+    // lines thinner than a pixel are widened to one pixel, so that
+    // silkscreen doesn't disappear from small thumbnails
+    boolean contains(double x, double y, double minimumRadius) {
+      if (kind == CAPSULE) {
+        double r = Math.max(radius, minimumRadius);
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lengthSq = dx*dx + dy*dy;
+        double t = 0;
+        if (lengthSq > 0) {
+          t = Math.max(0, Math.min(1, ((x - x1)*dx + (y - y1)*dy)/lengthSq));
+        }
+        double ex = x - (x1 + t*dx);
+        double ey = y - (y1 + t*dy);
+        return ex*ex + ey*ey <= r*r;
+      } else if (kind == BOX) {
+        double u = (x - x1)*cos + (y - y1)*sin;
+        double v = -(x - x1)*sin + (y - y1)*cos;
+        return Math.abs(u) <= halfWidth && Math.abs(v) <= halfHeight;
+      }
+      // even-odd rule, with the outline implicitly closed
+      boolean inside = false;
+      for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+        if ((ys[i] > y) != (ys[j] > y)
+            && x < xs[j] + (xs[i] - xs[j])*(y - ys[j])/(ys[i] - ys[j])) {
+          inside = !inside;
+        }
+      }
+      return inside;
+    }
+  }
+
+  private ArrayList<Shape> shapes = new ArrayList<Shape>();
+
+  // the image, once rendered
+  private int width = 0;
+  private int height = 0;
+  private int [] pixels = null;
+  private double originX = 0;
+  private double originY = 0;
+  private double scale = 0;   // pixels per nanometre
+
+  // writes a preview of the footprint, returning false if it has
+  // nothing which can be drawn
+  public static boolean write(Footprint f, String filename) throws IOException {
+    FootprintPreview preview = new FootprintPreview();
+    for (FootprintElementArchetype fea : f.footprintElements) {
+      fea.addPreviewShapes(preview);
+    }
+    if (!preview.render()) {
+      return false;
+    }
+    BufferedImage image = new BufferedImage(preview.width, preview.height,
+                                            BufferedImage.TYPE_INT_RGB);
+    image.setRGB(0, 0, preview.width, preview.height, preview.pixels, 0, preview.width);
+    return ImageIO.write(image, "png", new File(filename));
+  }
+
+  // the layer an element is drawn on, or -1 if it isn't drawn
+  static int layerOf(FootprintElementArchetype on) {
+    if (on.isBottomCopper()) {
+      return BOTTOM_COPPER;
+    } else if (on.isBottom()) {
+      return BOTTOM_SILK;
+    } else if (on.isTopCopper()) {
+      return TOP_COPPER;
+    } else if (on.isTop()) {
+      return TOP_SILK;
+    }
+    return -1;
+  }
+
+  public void line(FootprintElementArchetype on, long x1, long y1,
+                   long x2, long y2, long thickness) {
+    int layer = layerOf(on);
+    if (layer != -1) {
+      capsule(layer, x1, y1, x2, y2, thickness/2.0);
+    }
+  }
+
+  // angles in degrees, as used by the lihata arcs, with 0 degrees
+  // along the -x axis
+  public void arc(FootprintElementArchetype on, long x, long y, double radius,
+                  double startAngle, double deltaAngle, long thickness) {
+    int layer = layerOf(on);
+    if (layer == -1 || radius <= 0) {
+      return;
+    }
+    int segments = Math.max(4, (int)Math.ceil(Math.abs(deltaAngle)/10));
+    double previousX = x - radius*Math.cos(Math.toRadians(startAngle));
+    double previousY = y + radius*Math.sin(Math.toRadians(startAngle));
+    for (int segment = 1; segment <= segments; segment++) {
+      double angle = Math.toRadians(startAngle + deltaAngle*segment/segments);
+      double nextX = x - radius*Math.cos(angle);
+      double nextY = y + radius*Math.sin(angle);
+      capsule(layer, previousX, previousY, nextX, nextY, thickness/2.0);
+      previousX = nextX;
+      previousY = nextY;
+    }
+  }
+
+  public void polygon(FootprintElementArchetype on, long [] xs, long [] ys, int count) {
+    int layer = layerOf(on);
+    if (layer == -1 || count < 3) {
+      return;
+    }
+    Shape s = new Shape();
+    s.kind = OUTLINE;
+    s.layer = layer;
+    s.xs = new double[count];
+    s.ys = new double[count];
+    s.minX = s.maxX = xs[0];
+    s.minY = s.maxY = ys[0];
+    for (int index = 0; index < count; index++) {
+      s.xs[index] = xs[index];
+      s.ys[index] = ys[index];
+      s.minX = Math.min(s.minX, xs[index]);
+      s.maxX = Math.max(s.maxX, xs[index]);
+      s.minY = Math.min(s.minY, ys[index]);
+      s.maxY = Math.max(s.maxY, ys[index]);
+    }
+    shapes.add(s);
+  }
+
+  // round, obround and octagonal pads are drawn with round ends, and
+  // anything else as a rectangle; the orientation is in decidegrees
+  public void pad(long x, long y, long w, long h, char shape,
+                  long orientation, long drill, boolean bottom) {
+    int layer = bottom ? BOTTOM_COPPER : TOP_COPPER;
+    double angle = Math.toRadians(orientation/10.0);
+    double cos = Math.cos(angle);
+    double sin = -Math.sin(angle); // counter clockwise, with y down
+    if (shape == 'C' || shape == 'O' || shape == 'o') {
+      double half = Math.abs(w - h)/2.0;
+      double ux = (w > h) ? half*cos : -half*sin;
+      double uy = (w > h) ? half*sin : half*cos;
+      capsule(layer, x - ux, y - uy, x + ux, y + uy, Math.min(w, h)/2.0);
+    } else {
+      Shape s = new Shape();
+      s.kind = BOX;
+      s.layer = layer;
+      s.x1 = x;
+      s.y1 = y;
+      s.halfWidth = w/2.0;
+      s.halfHeight = h/2.0;
+      s.cos = cos;
+      s.sin = sin;
+      double extentX = Math.abs(s.halfWidth*cos) + Math.abs(s.halfHeight*sin);
+      double extentY = Math.abs(s.halfWidth*sin) + Math.abs(s.halfHeight*cos);
+      s.minX = x - extentX;
+      s.maxX = x + extentX;
+      s.minY = y - extentY;
+      s.maxY = y + extentY;
+      shapes.add(s);
+    }
+    if (drill > 0) {
+      capsule(HOLES, x, y, x, y, drill/2.0);
+    }
+  }
+
+  private void capsule(int layer, double x1, double y1, double x2, double y2,
+                       double radius) {
+    Shape s = new Shape();
+    s.kind = CAPSULE;
+    s.layer = layer;
+    s.x1 = x1;
+    s.y1 = y1;
+    s.x2 = x2;
+    s.y2 = y2;
+    s.radius = radius;
+    s.minX = Math.min(x1, x2) - radius;
+    s.maxX = Math.max(x1, x2) + radius;
+    s.minY = Math.min(y1, y2) - radius;
+    s.maxY = Math.max(y1, y2) + radius;
+    shapes.add(s);
+  }
+
+  // fits the shapes to the image and rasterises it, returning false
+  // if there is nothing to draw
+  boolean render() {
+    if (shapes.size() == 0) {
+      return false;
+    }
+    // a stable sort, so each layer keeps the order of the footprint
+    Collections.sort(shapes, new Comparator<Shape>() {
+        public int compare(Shape a, Shape b) {
+          return a.layer - b.layer;
+        }
+      });
+    double minX = Double.MAX_VALUE;
+    double minY = Double.MAX_VALUE;
+    double maxX = -Double.MAX_VALUE;
+    double maxY = -Double.MAX_VALUE;
+    for (Shape s : shapes) {
+      minX = Math.min(minX, s.minX);
+      minY = Math.min(minY, s.minY);
+      maxX = Math.max(maxX, s.maxX);
+      maxY = Math.max(maxY, s.maxY);
+    }
+    double extent = Math.max(1, Math.max(maxX - minX, maxY - minY));
+    scale = (SIZE - 2*MARGIN)/extent;
+    width = (int)Math.ceil((maxX - minX)*scale) + 2*MARGIN;
+    height = (int)Math.ceil((maxY - minY)*scale) + 2*MARGIN;
+    originX = minX - MARGIN/scale;
+    originY = minY - MARGIN/scale;
+    pixels = new int[width*height];
+    ForkJoinPool.commonPool().invoke(new Tile(0, 0, width, height));
+    return true;
+  }
+
+  // a rectangle of pixels, from x0, y0 up to but excluding x1, y1
+  private class Tile extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final int x0;
+    private final int y0;
+    private final int x1;
+    private final int y1;
+
+    Tile(int x0, int y0, int x1, int y1) {
+      this.x0 = x0;
+      this.y0 = y0;
+      this.x1 = x1;
+      this.y1 = y1;
+    }
+
+    protected void compute() {
+      if (x1 - x0 > TILE) {
+        int middle = (x0 + x1)/2;
+        invokeAll(new Tile(x0, y0, middle, y1), new Tile(middle, y0, x1, y1));
+      } else if (y1 - y0 > TILE) {
+        int middle = (y0 + y1)/2;
+        invokeAll(new Tile(x0, y0, x1, middle), new Tile(x0, middle, x1, y1));
+      } else {
+        rasterise();
+      }
+    }
+
+    private void rasterise() {
+      double minimumRadius = 0.5/scale;
+      double left = originX + x0/scale;
+      double top = originY + y0/scale;
+      double right = originX + x1/scale;
+      double bottom = originY + y1/scale;
+      ArrayList<Shape> visible = new ArrayList<Shape>();
+      for (Shape s : shapes) {
+        if (s.minX - minimumRadius <= right && s.maxX + minimumRadius >= left
+            && s.minY - minimumRadius <= bottom && s.maxY + minimumRadius >= top) {
+          visible.add(s);
+        }
+      }
+      for (int py = y0; py < y1; py++) {
+        double y = originY + (py + 0.5)/scale;
+        for (int px = x0; px < x1; px++) {
+          double x = originX + (px + 0.5)/scale;
+          int colour = BACKGROUND;
+          for (Shape s : visible) {
+            if (s.contains(x, y, minimumRadius)) {
+              colour = layerColours[s.layer];
+            }
+          }
+          pixels[py*width + px] = colour;
+        }
+      }
+    }
+  }
+
+}
@@ -88,8 +88,8 @@ public class FootprintText extends FootprintElementArchetype {
     return kicadTextDescriptor;
   }
 
-  public String lihataText(long xOffset, long yOffset, float magnificationRatio) {
-    return "      ha:text." + textCount++ + " {\n       scale = " + (int)(100*magnificationRatio) + 
+  public String lihataText(long xOffset, long yOffset, float magnificationRatio, ConversionContext context) {
+    return "      ha:text." + context.textCount++ + " {\n       scale = " + (int)(100*magnificationRatio) + 
 	"\n       thickness = " + kicadLineThicknessNm + "nm\n" +
 	"       x = " + (long)((xLayoutOffsetNm + xOffsetNm)*magnificationRatio) + "nm\n" +
 	"       y = " + (long)((yLayoutOffsetNm + yOffsetNm)*magnificationRatio) + "nm\n" +
@@ -99,12 +99,12 @@ public class FootprintText extends FootprintElementArchetype {
 	"       ha:attributes {\n       }\n       ha:flags {\n        clearline = 1\n       }\n      }\n";
   }
 
-  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format)
+  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format, ConversionContext context)
   {
     if (format.equals("pcb")) {
       return generateGEDAelement(xOffset, yOffset, magnificationRatio);
     } else {
-      return lihataText(xOffset, yOffset, magnificationRatio);
+      return lihataText(xOffset, yOffset, magnificationRatio, context);
     }
   }
 
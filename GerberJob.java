@@ -0,0 +1,273 @@
+// GerberJob.java v1.0
+// Copyright (C) 2022 Erich S. Heinzle, a1039181@gmail.com
+//
+// converts a fabrication set of gerbers, i.e. top and bottom copper,
+// silkscreen and solder mask, into a single pcb-rnd subcircuit, with
+// each layer being plotted on its own Plotter in parallel
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful, but
+// WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// The layer of each gerber is decided by its file ending, using either
+// the Protel style endings, or the suffixes KiCad adds to the board name.
+// The plotters don't share any state, and once they have all finished,
+// their elements are moved onto the kicad layer of their gerber and
+// added to the one footprint, in a fixed layer order, so that the
+// output doesn't depend on which plotter finished first.
+//
+// Pads flashed on copper become padstacks, registered in the shared
+// padstack registry of the conversion, with bottom pads reusing the
+// prototypes of the top pads. If excellon drill files are supplied,
+// pads with a plated hole through them become through hole padstacks,
+// and a bottom pad under a top through hole pad is dropped, as the
+// padstack covers both sides. Flashes on the solder mask are dropped
+// where a copper pad already provides the mask opening, and the rest,
+// along with silkscreen flashes, are drawn as lines and polygons.
+
+public class GerberJob {
+
+  static final int TOP_COPPER = 15;
+  static final int BOTTOM_COPPER = 0;
+  static final int TOP_SILK = 21;
+  static final int BOTTOM_SILK = 20;
+  static final int TOP_MASK = 23;
+  static final int BOTTOM_MASK = 22;
+
+  // the order the layers are merged in
+  private static final int [] layerOrder = {
+    TOP_COPPER, BOTTOM_COPPER, TOP_SILK, BOTTOM_SILK, TOP_MASK, BOTTOM_MASK
+  };
+
+  // file endings, compared in lower case, and the kicad layer of each
+  private static final String [] layerEndings = {
+    ".gtl", "-f_cu.gbr",
+    ".gbl", "-b_cu.gbr",
+    ".gto", "-f_silks.gbr", "-f_silkscreen.gbr",
+    ".gbo", "-b_silks.gbr", "-b_silkscreen.gbr",
+    ".gts", "-f_mask.gbr",
+    ".gbs", "-b_mask.gbr"
+  };
+  private static final int [] endingLayers = {
+    TOP_COPPER, TOP_COPPER,
+    BOTTOM_COPPER, BOTTOM_COPPER,
+    TOP_SILK, TOP_SILK, TOP_SILK,
+    BOTTOM_SILK, BOTTOM_SILK, BOTTOM_SILK,
+    TOP_MASK, TOP_MASK,
+    BOTTOM_MASK, BOTTOM_MASK
+  };
+
+  // excellon drill file endings, compared in lower case
+  private static final String [] drillEndings = {
+    ".drl", ".xln", ".exc"
+  };
+
+  public static boolean isDrillFile(String filename) {
+    String lowerCase = filename.toLowerCase();
+    for (String ending : drillEndings) {
+      if (lowerCase.endsWith(ending)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // returns the kicad layer for the gerber, or -1 if the file
+  // ending doesn't identify a layer of the fabrication set
+  public static int layerFor(String filename) {
+    String lowerCase = filename.toLowerCase();
+    for (int index = 0; index < layerEndings.length; index++) {
+      if (lowerCase.endsWith(layerEndings[index])) {
+        return endingLayers[index];
+      }
+    }
+    return -1;
+  }
+
+  // the job is named after the board, i.e. the first gerber
+  // without its layer ending
+  private static String jobName(String filename) {
+    String lowerCase = filename.toLowerCase();
+    for (String ending : layerEndings) {
+      if (lowerCase.endsWith(ending)) {
+        return filename.substring(0, filename.length() - ending.length());
+      }
+    }
+    return filename;
+  }
+
+  public static String [] convert(List<String> gerbers, int threads,
+                                  ConversionContext context) throws IOException {
+
+    List<String> layerFiles = new ArrayList<String>();
+    ExcellonDrills drills = null;
+    for (String gerber : gerbers) {
+      if (isDrillFile(gerber) && gerber.toLowerCase().indexOf("npth") != -1) {
+        System.out.println("Skipping: " + gerber + ", unplated holes");
+      } else if (isDrillFile(gerber)) {
+        if (drills == null) {
+          drills = new ExcellonDrills();
+        }
+        BufferedReader drillData = new BufferedReader(new FileReader(gerber));
+        try {
+          drills.load(drillData);
+        } finally {
+          drillData.close();
+        }
+      } else if (layerFor(gerber) == -1) {
+        System.out.println("Skipping: " + gerber + ", unknown gerber layer");
+      } else {
+        layerFiles.add(gerber);
+      }
+    }
+    if (layerFiles.size() == 0) {
+      System.out.println("Error: no gerber layers supplied.");
+      return null;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<Plotter>> results = new ArrayList<Future<Plotter>>();
+    final ExcellonDrills holes = drills; // only read by the plotters
+    for (final String filename : layerFiles) {
+      results.add(pool.submit(new Callable<Plotter>() {
+          public Plotter call() throws IOException {
+            return plot(filename, holes);
+          }
+        }));
+    }
+    pool.shutdown();
+
+    Plotter [] plotters = new Plotter[layerFiles.size()];
+    for (int index = 0; index < plotters.length; index++) {
+      try {
+        plotters[index] = results.get(index).get();
+      } catch (ExecutionException e) {
+        System.out.println("Error converting " + layerFiles.get(index)
+                           + ": " + e.getCause());
+      } catch (InterruptedException e) {
+        System.out.println("Interrupted converting " + layerFiles.get(index));
+      }
+    }
+
+    // the copper pads of each side, for finding the mask openings
+    // which the padstacks already provide
+    List<GerberSpatialIndex> topPads = new ArrayList<GerberSpatialIndex>();
+    List<GerberSpatialIndex> bottomPads = new ArrayList<GerberSpatialIndex>();
+    for (int index = 0; index < plotters.length; index++) {
+      if (plotters[index] == null) {
+        continue;
+      }
+      int layer = layerFor(layerFiles.get(index));
+      if (layer == TOP_COPPER) {
+        topPads.add(plotters[index].layout);
+      } else if (layer == BOTTOM_COPPER) {
+        bottomPads.add(plotters[index].layout);
+      }
+    }
+
+    Footprint merged = new Footprint(jobName(layerFiles.get(0)));
+    for (int layer : layerOrder) {
+      for (int index = 0; index < plotters.length; index++) {
+        if (plotters[index] == null || layerFor(layerFiles.get(index)) != layer) {
+          continue;
+        }
+        for (FootprintElementArchetype fea : plotters[index].footprint.footprintElements) {
+          if (!fea.isPad()) {
+            fea.setKicadLayer(layer);
+            merged.add(fea);
+          } else if (layer == BOTTOM_COPPER && ((Pad)fea).kicadDrillOneSizeNm > 0
+                     && onPad((Pad)fea, topPads)) {
+            continue; // already a through hole padstack from the top
+          } else if (layer == TOP_COPPER || layer == BOTTOM_COPPER) {
+            ((Pad)fea).bottomSide = (layer == BOTTOM_COPPER);
+            merged.add(fea);
+          } else if (!((layer == TOP_MASK && onPad((Pad)fea, topPads))
+                       || (layer == BOTTOM_MASK && onPad((Pad)fea, bottomPads)))) {
+            merged.add(drawnPad((Pad)fea, layer));
+          }
+        }
+      }
+    }
+
+    ArrayList<Footprint> footprints = new ArrayList<Footprint>();
+    footprints.add(merged);
+    context.setFPFormat("pcb-rnd"); // gerbers are only exported as subcircuits
+    return Footprint.exportFootprints(merged.footprintName, footprints, context,
+                                      1.0f, "Converted/", false, false);
+  }
+
+  private static Plotter plot(String gerberFile, ExcellonDrills drills)
+    throws IOException {
+    BufferedReader gerberData = new BufferedReader(new FileReader(gerberFile));
+    try {
+      Plotter gerberPlotter = new Plotter();
+      gerberPlotter.setScale(1.0, 1.0);
+      gerberPlotter.setSize(800, 640);
+      gerberPlotter.drills = drills;
+      if (!gerberPlotter.plotPCBElements(gerberData, gerberFile)) {
+        return null;
+      }
+      return gerberPlotter;
+    } finally {
+      gerberData.close();
+    }
+  }
+
+  // pads keep the layout's flipped y axis, the spatial index does not
+  private static boolean onPad(Pad p, List<GerberSpatialIndex> copperPads) {
+    for (GerberSpatialIndex pads : copperPads) {
+      if (pads.containing(p.kicadPadPositionXNm,
+                          -p.kicadPadPositionYNm).size() > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // a flash on a silkscreen or mask layer, which can't be a padstack,
+  // is drawn as a rectangle, or as a line with round ends
+  private static FootprintElementArchetype drawnPad(Pad p, int layer) {
+    long x = p.kicadPadPositionXNm;
+    long y = p.kicadPadPositionYNm;
+    long w = p.kicadShapeXsizeNm;
+    long h = p.kicadShapeYsizeNm;
+    if (p.kicadDrillShape == 'R') {
+      PolyPour pp = new PolyPour();
+      pp.populateGerberElement(new long [] {x - w/2, x + w/2, x + w/2, x - w/2},
+                               new long [] {-y - h/2, -y - h/2, -y + h/2, -y + h/2},
+                               4, 0);
+      pp.setKicadLayer(layer);
+      return pp;
+    }
+    DrawnElement de = new DrawnElement();
+    if (w > h) {
+      de.populateGerberElement(x - (w - h)/2, y, x + (w - h)/2, y, h, 0);
+    } else {
+      de.populateGerberElement(x, y - (h - w)/2, x, y + (h - w)/2, w, 0);
+    }
+    de.setKicadLayer(layer);
+    return de;
+  }
+
+}
@@ -0,0 +1,143 @@
+// GerberSpatialIndex.java v1.0
+// Copyright (C) 2022 Erich S. Heinzle, a1039181@gmail.com
+//
+// a uniform grid over the pads generated from a gerber, so that the
+// Plotter can find the pads overlapping a given area without comparing
+// every pad with every other one
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful, but
+// WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Coordinates are in nanometres, with the y axis of the gerber, i.e.
+// before it is flipped for the layout elements.
+// Only the cells in use are allocated, so the grid doesn't need to know
+// the extent of the layout in advance. Pads spanning too many cells are
+// kept in a separate list which is checked by every query.
+
+public class GerberSpatialIndex {
+
+  static final long CELL_SIZE = 1000000; // 1mm
+  static final int MAX_CELL_SPAN = 64;
+
+  public static class Entry {
+    long minX;
+    long minY;
+    long maxX;
+    long maxY;
+    char shape;
+    private int queryStamp = 0;
+
+    boolean overlaps(long x1, long y1, long x2, long y2) {
+      return minX <= x2 && maxX >= x1 && minY <= y2 && maxY >= y1;
+    }
+  }
+
+  private HashMap<Long,ArrayList<Entry>> cells = new HashMap<Long,ArrayList<Entry>>();
+  private ArrayList<Entry> oversized = new ArrayList<Entry>();
+  private int stamp = 0;
+
+  public Entry addPad(long x, long y, long width, long height, char shape) {
+    Entry e = new Entry();
+    e.minX = x - width/2;
+    e.minY = y - height/2;
+    e.maxX = x + width/2;
+    e.maxY = y + height/2;
+    e.shape = shape;
+    return add(e);
+  }
+
+  // the pads whose bounds overlap the area
+  public ArrayList<Entry> overlapping(long x1, long y1, long x2, long y2) {
+    ArrayList<Entry> found = new ArrayList<Entry>();
+    stamp++;
+    for (Entry e : oversized) {
+      collect(e, x1, y1, x2, y2, found);
+    }
+    for (long cx = cell(x1); cx <= cell(x2); cx++) {
+      for (long cy = cell(y1); cy <= cell(y2); cy++) {
+        ArrayList<Entry> cell = cells.get(key(cx, cy));
+        if (cell != null) {
+          for (Entry e : cell) {
+            collect(e, x1, y1, x2, y2, found);
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  // the pads covering the point
+  public ArrayList<Entry> containing(long x, long y) {
+    return overlapping(x, y, x, y);
+  }
+
+  // an existing pad of the same shape, size and position
+  public Entry duplicatePad(long x, long y, long width, long height, char shape) {
+    long minX = x - width/2;
+    long minY = y - height/2;
+    long maxX = x + width/2;
+    long maxY = y + height/2;
+    for (Entry e : overlapping(minX, minY, maxX, maxY)) {
+      if (e.shape == shape && e.minX == minX && e.minY == minY
+          && e.maxX == maxX && e.maxY == maxY) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  private void collect(Entry e, long x1, long y1, long x2, long y2,
+                       ArrayList<Entry> found) {
+    if (e.queryStamp != stamp && e.overlaps(x1, y1, x2, y2)) {
+      e.queryStamp = stamp; // entries spanning several cells are found once
+      found.add(e);
+    }
+  }
+
+  private Entry add(Entry e) {
+    if (cell(e.maxX) - cell(e.minX) >= MAX_CELL_SPAN
+        || cell(e.maxY) - cell(e.minY) >= MAX_CELL_SPAN) {
+      oversized.add(e);
+      return e;
+    }
+    for (long cx = cell(e.minX); cx <= cell(e.maxX); cx++) {
+      for (long cy = cell(e.minY); cy <= cell(e.maxY); cy++) {
+        Long k = key(cx, cy);
+        ArrayList<Entry> cell = cells.get(k);
+        if (cell == null) {
+          cell = new ArrayList<Entry>();
+          cells.put(k, cell);
+        }
+        cell.add(e);
+      }
+    }
+    return e;
+  }
+
+  private static long cell(long coordinate) {
+    long cell = coordinate/CELL_SIZE;
+    if (coordinate < 0 && cell*CELL_SIZE != coordinate) {
+      cell--; // round towards negative infinity
+    }
+    return cell;
+  }
+
+  private static Long key(long cx, long cy) {
+    return Long.valueOf((cx << 32) ^ (cy & 0xffffffffL));
+  }
+
+}
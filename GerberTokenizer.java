@@ -0,0 +1,140 @@
+// GerberTokenizer.java v1.0
+// Copyright (C) 2022 Erich S. Heinzle, a1039181@gmail.com
+//
+// splits RS-274X input into commands and "%", "*" delimiter tokens as
+// it is read, so that the Plotter can process a gerber of any size
+// without holding all of its commands in memory
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful, but
+// WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+// The tokens are pulled from a stack of sources. The bottom source is
+// the gerber being converted, and an IF include pushes the included
+// file on top of it, so that its tokens are processed before the rest
+// of the including file. The lines of a gerber are simply joined
+// together, so line breaks are dropped.
+
+public class GerberTokenizer {
+
+  // either a Reader, or a few tokens which were read ahead of an include
+  private static class Source {
+    Reader reader;
+    char [] buffer;
+    int count = 0;
+    int index = 0;
+    ArrayList<String> tokens;
+
+    Source(Reader in) {
+      reader = in;
+      buffer = new char[8192];
+    }
+
+    Source(ArrayList<String> readAhead) {
+      tokens = readAhead;
+    }
+  }
+
+  private ArrayList<Source> sources = new ArrayList<Source>();
+  private StringBuilder token = new StringBuilder();
+  private String current = null;
+
+  public GerberTokenizer(Reader in) throws IOException {
+    sources.add(new Source(in));
+    current = readToken();
+  }
+
+  // the command or delimiter to be processed, or null at end of input
+  public String current() {
+    return current;
+  }
+
+  public void next() throws IOException {
+    current = readToken();
+  }
+
+  // the included input is read once the following skip tokens of the
+  // current input have been processed, i.e. after the "*%" ending an
+  // IF command. Included readers are closed once they are exhausted.
+  public void include(Reader in, int skip) throws IOException {
+    ArrayList<String> readAhead = new ArrayList<String>();
+    for (int count = 0; count < skip; count++) {
+      String nextToken = readToken();
+      if (nextToken == null) {
+        break;
+      }
+      readAhead.add(nextToken);
+    }
+    sources.add(new Source(in));
+    if (readAhead.size() > 0) {
+      sources.add(new Source(readAhead));
+    }
+  }
+
+  private String readToken() throws IOException {
+    while (sources.size() > 0) {
+      Source top = sources.get(sources.size() - 1);
+      String nextToken = (top.reader == null) ? readAheadToken(top) : readToken(top);
+      if (nextToken != null) {
+        return nextToken;
+      }
+      sources.remove(sources.size() - 1);
+      if (top.reader != null && sources.size() > 0) {
+        top.reader.close(); // the outermost reader belongs to the caller
+      }
+    }
+    return null;
+  }
+
+  private String readAheadToken(Source s) {
+    if (s.index < s.tokens.size()) {
+      return s.tokens.get(s.index++);
+    }
+    return null;
+  }
+
+  private String readToken(Source s) throws IOException {
+    token.setLength(0);
+    while (true) {
+      if (s.index == s.count) {
+        s.count = s.reader.read(s.buffer);
+        s.index = 0;
+        if (s.count == -1) {
+          s.count = 0;
+          break;
+        }
+      }
+      char c = s.buffer[s.index];
+      if (c == '%' || c == '*') {
+        if (token.length() > 0) {
+          break; // the delimiter is left for the next token
+        }
+        s.index++;
+        return String.valueOf(c);
+      }
+      s.index++;
+      if (c != '\n' && c != '\r') {
+        token.append(c);
+      }
+    }
+    if (token.length() > 0) {
+      return token.toString();
+    }
+    return null;
+  }
+
+}
@@ -9,21 +9,22 @@ import java.util.Scanner;
 
 class HersheyParser extends CADParser {
 
-  private static boolean verbose = false;
+  private boolean verbose = false;
 
-  public HersheyParser(String filename, boolean verbose) {
+  public HersheyParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File HersheyFile = new File(filename);
     if (!HersheyFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting format: " + fpFormat);
+      System.out.println("Parsing: " + filename + " and exporting format: " + context.fpFormat);
     }
     this.verbose = verbose;
   }
 
   // Hershey files provide stroked font information in NIST format,
   // sometimes found in the wild in .py files
-  public static String [] convert(String hersheyData) throws IOException {
+  public String [] convert(String hersheyData) throws IOException {
     File hersheyDefs = new File(hersheyData);
     Scanner hersheyFonts = new Scanner(hersheyDefs);
     List<String> convertedFiles = new ArrayList<String>();
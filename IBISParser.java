@@ -31,18 +31,19 @@ import java.util.Scanner;
 
 class IBISParser extends CADParser {
 
-  public IBISParser(String filename, boolean verbose) {
+  public IBISParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File symDefFile = new File(filename);
     if (!symDefFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting format: " + symFormat);
+      System.out.println("Parsing: " + filename + " and exporting format: " + context.symFormat);
     }
   }
 
   // IBIS files provide pin mapping suitable for symbol generation
   // but do not provide package/footprint information
-  public static String [] convert(String IBISFile) throws IOException {
+  public String [] convert(String IBISFile) throws IOException {
     File input = new File(IBISFile);
     Scanner inputIBIS = new Scanner(input);
     String currentLine = "";
@@ -79,7 +80,7 @@ class IBISParser extends CADParser {
               // we make sure it isn't a comment line, i.e. "|" prefix
               if (!currentLine.startsWith("|")) {
                 SymbolPin latestPin = new SymbolPin();
-                latestPin.populateIBISElement(currentLine, symFormat);
+                latestPin.populateIBISElement(currentLine, context);
                 pins.addPin(latestPin);
               }
               lastline = inputIBIS.nextLine();//makenextLine()nullsafe 
@@ -92,26 +93,26 @@ class IBISParser extends CADParser {
         }
       }
     }
-    PinList newPinList = pins.createDILSymbol(symFormat);
+    PinList newPinList = pins.createDILSymbol(context.symFormat);
 
     // we can now build the final gschem symbol
-    newSymbol = symbolHeader(symFormat);
+    newSymbol = symbolHeader(context.symFormat);
     String FPAttr = "footprint=" + FPName;
     symAttributes = symAttributes
-        + SymbolText.BXLAttributeString(newPinList.textRHS(),0, FPAttr);       
+        + SymbolText.BXLAttributeString(context, newPinList.textRHS(),0, FPAttr);       
     String elData = newSymbol   // we now add pins to the header...
-        + newPinList.toString(xOffset,yOffset,symFormat)
+        + newPinList.toString(xOffset,yOffset, context)
         // remembering that we built this symbol with coords of
         // our own choosing, i.e. well defined y coords, so don't need
         // to worry about justifying it to display nicely in gschem
         // unlike BXL or similar symbol definitions
         + "\n"
-        + newPinList.calculatedBoundingBox(0,0).toString(0,0,symFormat)
+        + newPinList.calculatedBoundingBox(0,0).toString(0,0,context.symFormat)
         + symAttributes;
     String elName = symName + ".sym";
 
     // we now write the element to a file
-    elementWrite(elName, elData);
+    elementWrite(context.outputDir + elName, elData);
     String [] returnedFilename = {elName};
     return returnedFilename;
   }
@@ -34,14 +34,11 @@ import java.util.List;
 public class KicadModuleParser extends CADParser
 {
 
-  private static List<String> convertedFiles = new ArrayList<String>();
-
   static boolean insertElementPreliminaryComments = false;
   static boolean useDefaultAuthorCredits = true;
-  static boolean verboseMode = false;
+  private boolean verboseMode = false;
   static boolean quietMode = false;
   static boolean defaultHTMLsummary = true;
-  static boolean legacyKicadMmMetricUnits = false; // the usual legacy format is decimils
   static boolean usingStdInForModule = false;
   static boolean generateFontGlyphs = false;
   static long minimumViaAndDrillSizeNM = 0; // default is no minimum drill size
@@ -59,21 +56,27 @@ public class KicadModuleParser extends CADParser
   static String convertedKicadModulePath = "Converted/";
   static String htmlSummaryPathToConvertedModule = "kicad/footprints/";
   static String defaultAuthorCreditsFileName = "AuthorCredits/DefaultFootprintPreliminaryText.txt";
-  static String tempStringArg = "";
 
   // first, we parse the command line arguments passed to the utility when started
 
-  public KicadModuleParser(String filename, boolean verbose) {
+  public KicadModuleParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File KicadModuleFile = new File(filename);
     if (!KicadModuleFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting format: " + fpFormat);
+      System.out.println("Parsing: " + filename + " and exporting format: " + context.fpFormat);
     }
     verboseMode = verbose;
   }
 
-  public static String [] convert(String kicadModuleFileName) throws IOException {
+  public String [] convert(String kicadModuleFileName) throws IOException {
+
+    // these change from one conversion to the next, so they are not
+    // kept in the class wide settings
+    boolean legacyKicadMmMetricUnits = false; // the usual legacy format is decimils
+    String htmlSummaryFileName = KicadModuleParser.htmlSummaryFileName;
+    String tempStringArg = "";
 
     // we now come up with a more unique default HTML summary filename if a filename was
     // not specified at the command line
@@ -355,7 +358,7 @@ public class KicadModuleParser extends CADParser
                            "versus counted modules in library: " + modulesInLibraryCount);
       }
 
-    return Footprint.exportFootprints(kicadModuleFileName, footprintsInLibrary, fpFormat,
+    return Footprint.exportFootprints(kicadModuleFileName, footprintsInLibrary, context,
                                       magnificationRatio, convertedKicadModulePath, true, verboseMode);
   }
 
@@ -34,20 +34,20 @@ import java.util.List;
 
 class KicadSymbolParser extends CADParser {
 
-  private static boolean  verbose = true; 
-  private static List<String> convertedFiles = new ArrayList<String>();
+  private boolean verbose = true; 
 
-  public KicadSymbolParser(String filename, boolean verbose) {
+  public KicadSymbolParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File KicadSymbolFile = new File(filename);
     if (!KicadSymbolFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting format: " + symFormat);
+      System.out.println("Parsing: " + filename + " and exporting format: " + context.symFormat);
     }
     this.verbose = verbose;
   }
 
-  public static String [] convert(String KicadLib) throws IOException {
+  public String [] convert(String KicadLib) throws IOException {
 
     boolean quietMode = false;
     boolean defaultHTMLsummary = true;
@@ -67,6 +67,7 @@ class KicadSymbolParser extends CADParser {
     String htmlSummaryPathToConvertedModule = "kicad/symbols/";
     String tempStringArg = "";
     String appendedAttributesFileName = "";
+    List<String> convertedFiles = new ArrayList<String>();
     String defaultAppendedAttributesFileName =
         "AuthorCredits/DefaultSymbolAppendedAttributes.txt";
 
@@ -210,7 +211,7 @@ class KicadSymbolParser extends CADParser {
           }
 
         // we generate a string containing the GEDA element filename, ok for xschem too
-        String outputFileName = sym.generateSymbolFilename(symFormat);
+        String outputFileName = sym.generateSymbolFilename(context.symFormat);
 
         // we then append a listing for this particular footprint
         // to the HTML summary
@@ -228,57 +229,71 @@ class KicadSymbolParser extends CADParser {
             System.out.println("About to use: " + outputFileName + " for symbol: " + sym);
           }
 
-        // a String variable to contain the symbol data
+        // the symbol data is written straight to the file, unless
+        // we also need a copy of it for the console
 	sym.suppressTranslation(true); // adjusting translation to suit gschem (minX,minY) > (0,0) can break
-        String symbolData = symbolHeader(symFormat) + sym.generateSymbol(gridSpacing, symFormat);
-	if (verbose) {
-          System.out.println("Just generated symbol.");
-	}
-	if (symFormat.equals("gschem")) {
-          if (authorField != null) {
-            symbolData = symbolData +
-                SymbolText.attributeString(-sym.xTranslate, -sym.yTranslate, ("author=" + authorField));
-          }
-          if (distLicenceField != null) {
-            symbolData = symbolData +
-                SymbolText.attributeString(-sym.xTranslate, -sym.yTranslate,
-                                           ("dist-licence=" + distLicenceField));
-          }
-          if (useLicenceField != null) {
-            symbolData = symbolData +
-                SymbolText.attributeString(-sym.xTranslate, -sym.yTranslate,
-                                           ("use-licence=" + useLicenceField));
+        BufferedWriter elementOutput = null;
+        try {
+          elementOutput = Footprint.elementWriter(context.outputDir + convertedKicadModulePath + outputFileName);
+          StringBuilder symbolCopy = null;
+          Appendable symbolData = elementOutput;
+          if (verbose) {
+            symbolCopy = new StringBuilder();
+            symbolData = symbolCopy;
           }
+          symbolData.append(symbolHeader(context.symFormat));
+          sym.writeSymbol(symbolData, gridSpacing, context);
           if (verbose) {
-            System.out.println("About to see if attributes file exists.");
+            System.out.println("Just generated symbol.");
           }
-          if (!useDefaultAppendedAttributes && file2.exists()) {
-            Scanner appendedAttributes = new Scanner(file2);
-            while (appendedAttributes.hasNext())
-              {
-                symbolData = symbolData +
-                    SymbolText.attributeString(-sym.xTranslate, -sym.yTranslate, (appendedAttributes.nextLine()));
-              }
-            appendedAttributes.close();
+          if (context.symFormat.equals("gschem")) {
+            if (authorField != null) {
+              symbolData.append(SymbolText.attributeString(context, -sym.xTranslate, -sym.yTranslate,
+                                                           ("author=" + authorField)));
+            }
+            if (distLicenceField != null) {
+              symbolData.append(SymbolText.attributeString(context, -sym.xTranslate, -sym.yTranslate,
+                                                           ("dist-licence=" + distLicenceField)));
+            }
+            if (useLicenceField != null) {
+              symbolData.append(SymbolText.attributeString(context, -sym.xTranslate, -sym.yTranslate,
+                                                           ("use-licence=" + useLicenceField)));
+            }
+            if (verbose) {
+              System.out.println("About to see if attributes file exists.");
+            }
+            if (!useDefaultAppendedAttributes && file2.exists()) {
+              Scanner appendedAttributes = new Scanner(file2);
+              while (appendedAttributes.hasNext())
+                {
+                  symbolData.append(SymbolText.attributeString(context, -sym.xTranslate, -sym.yTranslate,
+                                                               (appendedAttributes.nextLine())));
+                }
+              appendedAttributes.close();
+            }
+            // now we add source = kicad.mod name
+            symbolData.append(SymbolText.attributeString(context, -sym.xTranslate, -sym.yTranslate,
+                                                         ("source=" + kicadLibName)));
           }
-          // now we add source = kicad.mod name
-          symbolData = symbolData +
-              SymbolText.attributeString(-sym.xTranslate, -sym.yTranslate, ("source=" + kicadLibName));
-	}
 
-        if (verbose)
-          {
-            System.out.println(symbolData);
-            // and we now use the toString method to return the module text
-            System.out.println("\n\n" + sym + "\n\n");
+          if (verbose)
+            {
+              System.out.println(symbolCopy);
+              // and we now use the toString method to return the module text
+              System.out.println("\n\n" + sym + "\n\n");
+              System.out.println("About to write symbol data to file.");
+              elementOutput.append(symbolCopy);
+            }
+          elementOutput.newLine();
+        } catch(IOException e) {
+          System.out.println("There was an error saving: "
+                             + context.outputDir + convertedKicadModulePath + outputFileName);
+          System.out.println(e);
+        } finally {
+          if (elementOutput != null) {
+            elementOutput.close();
           }
-
-        // we now create a file with the name of the module and conversion directory
-        // path prepended
-	if (verbose) {
-          System.out.println("About to write symbol data to file.");
-	}
-	elementWrite(convertedKicadModulePath + outputFileName, symbolData);
+        }
 	convertedFiles.add(outputFileName);
       }
 
@@ -294,7 +309,7 @@ class KicadSymbolParser extends CADParser {
     // and we pass the HTML to a subroutine to save the summary to disc, using either a user
     // supplied file name, or alternatively,  an auto generated name kicad_module_name-HTMLsummary.html
 
-    elementWrite(convertedKicadModulePath + htmlSummaryFileName, HTMLsummaryOfConvertedSymbols);
+    elementWrite(context.outputDir + convertedKicadModulePath + htmlSummaryFileName, HTMLsummaryOfConvertedSymbols);
 
     return convertedFiles.toArray(new String[convertedFiles.size()]);
   }
@@ -35,14 +35,15 @@ import java.util.Scanner;
 
 class LTSpiceParser extends CADParser {
 
-  private static boolean verbose = false;
+  private boolean verbose = false;
 
-  public LTSpiceParser(String filename, boolean verbose) {
+  public LTSpiceParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File LTSpiceFile = new File(filename);
     if (!LTSpiceFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting format: " + symFormat);
+      System.out.println("Parsing: " + filename + " and exporting format: " + context.symFormat);
     }
     this.verbose = verbose;
   }
@@ -60,7 +61,7 @@ class LTSpiceParser extends CADParser {
     need to consider which end of components LTSpice considers 1, 2 etc...
     need to consider x,y offset to centre schematic, i.e. ?  +(40000,40000)
   */
-  public static String [] convert(String spiceFile) throws IOException {
+  public String [] convert(String spiceFile) throws IOException {
     File input = new File(spiceFile);
     Scanner inputAsc = new Scanner(input);
     String currentLine = "";
@@ -87,15 +88,15 @@ class LTSpiceParser extends CADParser {
         String[] tokens = currentLine.split(" ");
         if ("InstName".equals(tokens[1])) {
           symAttributes = "refdes=" + tokens[2];
-          SymbolText.resetSymbolTextAttributeOffsets();
+          context.resetSymbolTextAttributeOffsets();
           if (symbolAttributeSet == null) {
             symbolAttributeSet = "\n{"
-                + SymbolText.LTSpiceRefdesString(lastX,
+                + SymbolText.LTSpiceRefdesString(context, lastX,
                                                  lastY,
                                                  symAttributes);
           } else {
             symbolAttributeSet = symbolAttributeSet
-                + SymbolText.LTSpiceRefdesString(lastX,
+                + SymbolText.LTSpiceRefdesString(context, lastX,
                                                  lastY,
                                                  symAttributes);
           }
@@ -104,12 +105,12 @@ class LTSpiceParser extends CADParser {
           symAttributes = "value=" + tokens[2];
           if (symbolAttributeSet == null) {
             symbolAttributeSet = "\n{"
-                + SymbolText.LTSpiceRefdesString(lastX,
+                + SymbolText.LTSpiceRefdesString(context, lastX,
                                                  lastY,
                                                  symAttributes);
           } else {
             symbolAttributeSet = symbolAttributeSet
-                + SymbolText.LTSpiceRefdesString(lastX,
+                + SymbolText.LTSpiceRefdesString(context, lastX,
                                                  lastY,
                                                  symAttributes);
           }
@@ -195,10 +196,10 @@ class LTSpiceParser extends CADParser {
     }
     // we can now finalise the gschem schematic
     //symAttributes = symAttributes
-    // + SymbolText.BXLAttributeString(newPinList.textRHS(),0, FPAttr);
+    // + SymbolText.BXLAttributeString(context, newPinList.textRHS(),0, FPAttr);
     String networkName = schematicName + ".sch";
     // we now write the converted schematic data to a file
-    elementWrite(networkName, newSchematic);
+    elementWrite(context.outputDir + networkName, newSchematic);
     String [] returnedFilename = {networkName};
     return returnedFilename;
   }
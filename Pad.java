@@ -97,6 +97,12 @@ public class Pad extends FootprintElementArchetype
 
   String gEDAflag = "blah"; // hex values now deprecated i.e. "0x0000"
 
+  private PadKey padKey = null; // identifies the padstack prototype
+
+  // a pad on the bottom side uses the same padstack prototype as its
+  // top side equivalent, and is placed with the layers swapped
+  boolean bottomSide = false;
+
   public Pad() // the default constructor simply creates a simple default pad for testing
   {
     kicadShapePadName = "1";
@@ -513,6 +519,19 @@ public class Pad extends FootprintElementArchetype
                                     char shape,
                                     String attr,
                                     int pinNum) {
+    populateGerberElement(w, h, x, y, shape, attr, 0, pinNum);
+  }
+
+  // as above, for a pad with a hole drilled through it, as found
+  // in an accompanying excellon drill file
+  public void populateGerberElement(long w,
+                                    long h,
+                                    long x,
+                                    long y,
+                                    char shape,
+                                    String attr,
+                                    long drill,
+                                    int pinNum) {
 
     kicadShapeXsizeNm = w;
     kicadShapeYsizeNm = h;
@@ -520,7 +539,7 @@ public class Pad extends FootprintElementArchetype
     kicadPadPositionYNm = y;
     kicadDrillShape = shape;
     kicadShapeOrientation = 0;
-    kicadDrillOneSizeNm = 0;
+    kicadDrillOneSizeNm = drill;
     kicadPadAttributeType = attr;
     kicadShapePadName = "" + pinNum;
     kicadShapeNetName = kicadShapePadName;
@@ -528,20 +547,31 @@ public class Pad extends FootprintElementArchetype
     kicadDrillShapeTwo = '0';
   }
   
+  public void addPreviewShapes(FootprintPreview preview) {
+    preview.pad(kicadPadPositionXNm, kicadPadPositionYNm,
+                kicadShapeXsizeNm, kicadShapeYsizeNm, kicadDrillShape,
+                kicadShapeOrientation, kicadDrillOneSizeNm, bottomSide);
+  }
+
   public boolean isPad() {
     return true;
   }
 
-  public String pinPadHash() {
-    return "pinPadHash " + kicadShapeXsizeNm + kicadShapeYsizeNm + kicadDrillShape +
-        kicadDrillOneSizeNm + kicadPadAttributeType;
+  // the key is worked out once, when the padstack prototypes are
+  // first exported, since the pad has been fully populated by then
+  public PadKey padKey() {
+    if (padKey == null) {
+      padKey = new PadKey(kicadShapeXsizeNm, kicadShapeYsizeNm, kicadDrillShape,
+                          kicadDrillOneSizeNm, kicadPadAttributeType);
+    }
+    return padKey;
   }
 
-  public String generateLihata(long xOffsetNm, long yOffsetNm, float magnificationRatio)  {
+  public String generateLihata(long xOffsetNm, long yOffsetNm, float magnificationRatio, ConversionContext context)  {
     return
-	"    ha:padstack_ref." + padstackInstances++ +
-	" {\n     smirror = 0\n     ha:attributes {\n     }\n" +
-	"     proto = " + Footprint.padStackRef(this) +
+	"    ha:padstack_ref." + context.padstackInstances++ +
+	" {\n     smirror = " + (bottomSide ? 1 : 0) + "\n     ha:attributes {\n     }\n" +
+	"     proto = " + context.padStackRef(this) +
 	"\n     xmirror = 0\n     x = " + (xOffsetNm + kicadPadPositionXNm) +
 	"nm\n     rot = " + kicadShapeOrientation/10 + "\n" +
 	"     y = " + (yOffsetNm + kicadPadPositionYNm) +
@@ -684,6 +714,7 @@ public class Pad extends FootprintElementArchetype
         long tempVal = kicadShapeXsizeNm;
         kicadShapeXsizeNm = kicadShapeYsizeNm;
         kicadShapeYsizeNm = tempVal;
+        padKey = null; // no longer the same prototype
       }
     // simple support for rotation has been effected with a range of orientation values,
     // quantised into either horizontal of vertical
@@ -1080,11 +1111,11 @@ public class Pad extends FootprintElementArchetype
                 
   }
 
-  public String generateElement(long xOffsetNm, long yOffsetNm, float magnificationRatio, String format) {
+  public String generateElement(long xOffsetNm, long yOffsetNm, float magnificationRatio, String format, ConversionContext context) {
     if (format.equals("pcb")) {
       return generateGEDAelement(xOffsetNm, yOffsetNm, magnificationRatio);
     } else {
-      return generateLihata(xOffsetNm, yOffsetNm, magnificationRatio);
+      return generateLihata(xOffsetNm, yOffsetNm, magnificationRatio, context);
     }
   }
 
@@ -0,0 +1,80 @@
+// PadKey - identifies the padstack prototype needed by a pad
+// PadKey.java v1.0
+//
+// Copyright (C) 2015, 2019 Erich S. Heinzle, a1039181@gmail.com
+
+//    see LICENSE-gpl-v2.txt for software license
+//    see README.txt
+//
+//    This program is free software; you can redistribute it and/or
+//    modify it under the terms of the GNU General Public License
+//    as published by the Free Software Foundation; either version 2
+//    of the License, or (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program; if not, write to the Free Software
+//    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+//
+//    PadKey Copyright (C) 2015,2019 Erich S. Heinzle a1039181@gmail.com
+//    translate2coralEDA, translate2geda Copyright (C) 2015, 2019
+//    Erich S. Heinzle a1039181@gmail.com
+
+// two pads share a padstack prototype if they have the same copper
+// size, shape, drill and pad type, wherever they are placed, in
+// whichever footprint they are found
+
+public final class PadKey {
+
+  private final long xSizeNm;
+  private final long ySizeNm;
+  private final char shape;
+  private final long drillSizeNm;
+  private final String padType;
+  private final int hash;
+
+  public PadKey(long xSizeNm, long ySizeNm, char shape,
+                long drillSizeNm, String padType) {
+    this.xSizeNm = xSizeNm;
+    this.ySizeNm = ySizeNm;
+    this.shape = shape;
+    this.drillSizeNm = drillSizeNm;
+    this.padType = padType;
+    int h = (int)(xSizeNm ^ (xSizeNm >>> 32));
+    h = 31*h + (int)(ySizeNm ^ (ySizeNm >>> 32));
+    h = 31*h + shape;
+    h = 31*h + (int)(drillSizeNm ^ (drillSizeNm >>> 32));
+    h = 31*h + padType.hashCode();
+    hash = h;
+  }
+
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof PadKey)) {
+      return false;
+    }
+    PadKey key = (PadKey)other;
+    return (hash == key.hash
+            && xSizeNm == key.xSizeNm
+            && ySizeNm == key.ySizeNm
+            && shape == key.shape
+            && drillSizeNm == key.drillSizeNm
+            && padType.equals(key.padType));
+  }
+
+  public int hashCode() {
+    return hash;
+  }
+
+  public String toString() {
+    return "PadKey " + xSizeNm + "x" + ySizeNm + "nm " + shape
+        + " drill " + drillSizeNm + "nm " + padType;
+  }
+
+}
@@ -0,0 +1,66 @@
+// PadStackRegistry - keeps track of the padstack prototypes used by
+// pads when exporting pcb-rnd subcircuits
+// PadStackRegistry.java v1.0
+//
+// Copyright (C) 2015, 2019 Erich S. Heinzle, a1039181@gmail.com
+
+//    see LICENSE-gpl-v2.txt for software license
+//    see README.txt
+//
+//    This program is free software; you can redistribute it and/or
+//    modify it under the terms of the GNU General Public License
+//    as published by the Free Software Foundation; either version 2
+//    of the License, or (at your option) any later version.
+//
+//    This program is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    You should have received a copy of the GNU General Public License
+//    along with this program; if not, write to the Free Software
+//    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+//
+//    PadStackRegistry Copyright (C) 2015,2019 Erich S. Heinzle a1039181@gmail.com
+//    translate2coralEDA, translate2geda Copyright (C) 2015, 2019
+//    Erich S. Heinzle a1039181@gmail.com
+
+import java.util.HashMap;
+
+// prototypes are numbered from zero in the order they are first
+// registered, which is the order pcb-rnd expects to find them in
+// the li:padstack_prototypes list, so that numbering does not
+// depend on hashing
+
+public class PadStackRegistry {
+
+  private HashMap<PadKey, Integer> prototypes = new HashMap<PadKey, Integer>();
+
+  // returns true if the prototype had not been seen before,
+  // in which case it is given the next available index
+  public boolean add(PadKey key) {
+    if (prototypes.containsKey(key)) {
+      return false;
+    }
+    prototypes.put(key, prototypes.size());
+    return true;
+  }
+
+  // returns the index of the prototype, or -1 if it is unknown
+  public int indexOf(PadKey key) {
+    Integer index = prototypes.get(key);
+    if (index == null) {
+      return -1;
+    }
+    return index;
+  }
+
+  public int size() {
+    return prototypes.size();
+  }
+
+  public void clear() {
+    prototypes.clear();
+  }
+
+}
@@ -22,6 +22,8 @@
 //    translate2coralEDA, translate2geda Copyright (C) 2015, 2019
 //    Erich S. Heinzle a1039181@gmail.com
 
+import java.io.IOException;
+
 /**
  *
  * This class stores a collection of SymbolPin objects and has methods to determine
@@ -548,59 +550,75 @@ public class PinList {
     //System.out.println("Generated new bounding box");
   }
 
-  public String toString(long xOffset, long yOffset) {
-    return toString(xOffset, yOffset, "gschem");
+  public String toString(long xOffset, long yOffset, ConversionContext context) {
+    StringBuilder output = new StringBuilder();
+    try {
+      writePins(output, xOffset, yOffset, context);
+    } catch (IOException e) {
+      // appending to a StringBuilder does not throw
+    }
+    return output.toString();
   }
 
-  public String toString(long xOffset, long yOffset, String format) {
-    String output = "";
-    SymbolPin.resetPinSeqTally();
+  public void writePins(Appendable output, long xOffset, long yOffset, ConversionContext context)
+      throws IOException {
+    String format = context.symFormat;
+    // pinseq attributes are numbered from 1 in each symbol
+    int pinSeq = 0;
     for (int index = 0; index < pinCounts[0]; index++) {
-      output = output + "\n" + slotArrays[0][index].toString(xOffset, yOffset, format);
+      output.append("\n").append(slotArrays[0][index].toString(xOffset, yOffset, format, ++pinSeq));
     }
     if (pinCounts.length > 1) { // length == 1 for bxl files
       for (int index = 0; index < pinCounts[1]; index++) {
         // by default, for a multislot device, we only display slot 1
-        output = output + "\n" + slotArrays[1][index].toString(xOffset, yOffset, format); 
+        output.append("\n").append(slotArrays[1][index].toString(xOffset, yOffset, format, ++pinSeq)); 
       }
     }
     if (format.equals("gschem")) {
       // we offset text attributes to the RHS by default
       // this should not cause issues with schematic conversions
-      output = output + slotSummaryRHS(xOffset, yOffset);
+      writeSlotSummary(output, context, xOffset, yOffset, textRHS());
     }
-    return output;
   }
 
-  public String slotSummary(long xOffset, long yOffset) {
-    return slotSummary(xOffset, yOffset, 0); // no RHS offset
+  public String slotSummary(ConversionContext context, long xOffset, long yOffset) {
+    return slotSummary(context, xOffset, yOffset, 0); // no RHS offset
   }
 
-  public String slotSummaryRHS(long xOffset, long yOffset) {
-    return slotSummary(xOffset, yOffset, textRHS()); // offset to RHS
+  public String slotSummaryRHS(ConversionContext context, long xOffset, long yOffset) {
+    return slotSummary(context, xOffset, yOffset, textRHS()); // offset to RHS
+  }
+
+  private String slotSummary(ConversionContext context, long xOffset, long yOffset, long ROffset) {
+    StringBuilder summary = new StringBuilder();
+    try {
+      writeSlotSummary(summary, context, xOffset, yOffset, ROffset);
+    } catch (IOException e) {
+      // appending to a StringBuilder does not throw
+    }
+    return summary.toString();
   }
 
-  private String slotSummary(long xOffset, long yOffset, long ROffset) {
-    String summary = "";
+  private void writeSlotSummary(Appendable summary, ConversionContext context,
+                                long xOffset, long yOffset, long ROffset) throws IOException {
     if (kicadSlots < 2) {
-      summary = SymbolText.attributeString(ROffset + xOffset, yOffset, "numslots=0");
+      summary.append(SymbolText.attributeString(context, ROffset + xOffset, yOffset, "numslots=0"));
     } else { // this is a multi-slot device
       // we summarise the number of slots
-      summary = SymbolText.attributeString(ROffset + xOffset, yOffset, "numslots=" + kicadSlots);
+      summary.append(SymbolText.attributeString(context, ROffset + xOffset, yOffset, "numslots=" + kicadSlots));
       // we explain which slot is implemented in the symbol
-      summary = summary + SymbolText.attributeString(ROffset + xOffset, yOffset, "slot=1");
+      summary.append(SymbolText.attributeString(context, ROffset + xOffset, yOffset, "slot=1"));
       // then we generate some slotdefs
       for (int index = 1; index < numSlots; index++) {
-        summary = summary + SymbolText.attributeString(ROffset + xOffset, yOffset, "slotdef=" + index + ":");
+        summary.append(SymbolText.attributeString(context, ROffset + xOffset, yOffset, "slotdef=" + index + ":"));
         for (int pin = 0 ; pin < pinCounts[index]; pin ++) {
-          summary = summary + slotArrays[index][pin].pinNumber;
+          summary.append(slotArrays[index][pin].pinNumber);
           if (pin < (pinCounts[index] -1)) {
-            summary = summary + ",";
+            summary.append(",");
           }
         }
       }
     }
-    return summary;
   }
 
   public long textRHS() {
@@ -57,7 +57,6 @@ import java.awt.Rectangle; // use for bounds of polygons
 import java.awt.Color;
 import java.io.BufferedReader;
 import java.io.FileReader;
-import java.util.Vector;
 import java.util.StringTokenizer;
 
 // EH addition
@@ -69,6 +68,7 @@ import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 //
 //
@@ -83,6 +83,10 @@ class Plotter {
 
   ArrayList<Footprint> footprints = new ArrayList<Footprint>();
   Footprint footprint = new Footprint("noNameSetForFootprintExport");
+  // the pads added to the footprint, by location
+  GerberSpatialIndex layout = new GerberSpatialIndex();
+  // holes from excellon drill files, which make pads through hole
+  ExcellonDrills drills = null;
   Graphics   g;	// Graphics context into which the plotter renders        
   BufferedImage bi; // try this here
   Graphics2D bg;
@@ -135,8 +139,8 @@ class Plotter {
 
   // added for centring and PCN element export
 
-  Vector<String>     cmdVector;// Vector containing all single commands and tokens
-  int        pos;	// Global position in cmdVector for parser
+  GerberTokenizer    tokens;// Supplies the single commands and tokens as they are read
+  int        pos;	// Global position of the current command for parser
   boolean    ext;	// Flag wether we are inside an extended command
 
   // State variables. We have quite a few of them. First the current
@@ -156,7 +160,11 @@ class Plotter {
   static final int    RECTANGLE = 2;
   static final int    OVAL      = 3;
   static final int    POLYGON   = 4;
-  double[][] ad;	// Aperture definitions array
+  static final int    MACRO     = 5;
+  HashMap<Integer,Aperture> apertures;	// Aperture definitions by D-code
+  Aperture   drawingAperture;	// Aperture drawing the current primitive
+  Aperture   flashingAperture;	// Aperture flashed for it, D10 by default
+  HashMap<String,ApertureMacro> macros;	// Compiled %AM aperture macros
 
 
   // Drawing modes
@@ -211,7 +219,7 @@ class Plotter {
     getDim    = false;		// We usually don't calc the dim
     sx        = 1.0;		// Default is 1:1 scaling on X-axis
     sy        = 1.0;		// Default is 1:1 scaling on Y-axis
-    cmdVector = new Vector<String>();	// New command vector
+    tokens    = null;		// No input yet
     points    = new Polygon();	// Polygon for area fill
 
     longPoints = new LongPolygon(); // for storing nanometre dimensions and returning centroid
@@ -319,6 +327,8 @@ class Plotter {
 
 
   // a modified plotImage routine to centre and plot the image
+  // NB: nothing calls this at present; gerber conversions go through
+  // generatePCBFile(), which keeps the gerber's own origin
   public boolean centreImage(String in) throws IOException {
     if ((g == null) && !headless) {
       System.out.println("Error: No Graphics context for plotting set.");
@@ -362,31 +372,28 @@ class Plotter {
   // the use in the second run to scale the plot to match the display
   // as good as possible.
   //
-  public String[] generatePCBFile(String in, String filename, String format) throws IOException {
+  public String[] generatePCBFile(String in, String filename, ConversionContext context) throws IOException {
 
-    String[] convertedFiles = new String[1];
-    convertedFiles[0] = "Error";
     if ((in == null) || in.equals("")) {
+      String[] convertedFiles = new String[1];
+      convertedFiles[0] = "Error";
       System.out.println("Error: Input is null or empty.");
       return convertedFiles;
     }
+    return generatePCBFile(new StringReader(in), filename, context);
+  }
 
-    firstCoordsRead = false; // to allow centring to work
-    //        xOffset = 0.0;
-    //yOffset = 0.0;
-    // done to avoid doubling up data with successive
-    // conversions of the same or different gerber files
+  // as above, but the gerber is read from the supplied Reader as it
+  // is tokenized, rather than having to be loaded into a String first
+  public String[] generatePCBFile(Reader in, String filename, ConversionContext context) throws IOException {
 
-    try {
+    String[] convertedFiles = new String[1];
+    convertedFiles[0] = "Error";
 
-      //          getDim = true; // actually, we don't care with footprints
-      // if the gerber is not well centred
-      footprint.setFootprintName(filename);
-      getDim = false;
-      initStateMachine();
-      parseInput(in, 0);
-      // System.out.println("About to process input.");
-      processInput(999999999);
+    try {
+      if (!plotPCBElements(in, filename)) {
+        return convertedFiles;
+      }
 
       // System.out.println("About to write file.");
       footprints.add(footprint);
@@ -394,7 +401,7 @@ class Plotter {
       boolean verbose = false;
       convertedFiles = Footprint.exportFootprints(filename,
                                                   footprints,
-                                                  format,
+                                                  context,
                                                   1.0f, "Converted/",
                                                   HTMLsummary,
                                                   verbose);      
@@ -410,6 +417,32 @@ class Plotter {
     return convertedFiles;
   }
 
+  // converts the gerber into layout primitives in the footprint,
+  // without exporting it, so that the layers of a fabrication job
+  // can each be plotted on their own and then merged
+  public boolean plotPCBElements(Reader in, String filename) throws IOException {
+
+    firstCoordsRead = false; // to allow centring to work
+    //        xOffset = 0.0;
+    //yOffset = 0.0;
+    // done to avoid doubling up data with successive
+    // conversions of the same or different gerber files
+
+    //          getDim = true; // actually, we don't care with footprints
+    // if the gerber is not well centred
+    footprint.setFootprintName(filename);
+    getDim = false;
+    initStateMachine();
+    parseInput(in);
+    if (tokens.current() == null) {
+      System.out.println("Error: Input is null or empty.");
+      return false;
+    }
+    // System.out.println("About to process input.");
+    processInput(999999999);
+    return true;
+  }
+
 
   //
   // Simple method to (re)initialize the state machine. We do this only
@@ -420,9 +453,10 @@ class Plotter {
     x          = 0.0;
     y          = 0.0;
     d          = 10;
-    ad         = new double[1000][6];
+    apertures  = new HashMap<Integer,Aperture>();
+    macros     = new HashMap<String,ApertureMacro>();
 
-    ad[10]     = new double[]{1, 0.025, 0, 0, 0, 0};
+    apertures.put(10, new CircleAperture(new double[] {0.025}));
 
     draw       = OFF;
     drawColor  = 0;
@@ -443,8 +477,8 @@ class Plotter {
     // New Polygon for area fill
     points    = new Polygon();
 
-    // Clean up command vector
-    cmdVector.removeAllElements();
+    // Forget any earlier input
+    tokens = null;
 
     pos = 0;	// Reset initial parser position
     ext = false;	// We start of with normal commands
@@ -453,28 +487,24 @@ class Plotter {
 
 
   //
-  // Here we split up the whole input into pieces to make processing it
-  // much easier. Actually, we do something really nasty here. For the IF
-  // extended command, we read in the file and insert the just read file
-  // directly into out cmdVector. As we hopefully won't encounter this too
-  // often this is a nice hack to do it. Other wise we would have to do
-  // recursive calls which might drain our stack space.
+  // Here we set up the tokenizer, which splits the input into commands and
+  // "%", "*" tokens as the commands are processed. For the IF extended
+  // command, the included file is pushed onto the tokenizer, and is read
+  // before the rest of the input, just as if it had been spliced in.
   //
   public void parseInput(String in, int pos) {
-    if (DEBUG)
-      System.out.println("Debug: Start parsing input.");
-
-    // Parse through the whole input and store every command and token
-    // in the cmdVector for later processing
-    StringTokenizer st = new StringTokenizer(in,"%*", true);
-
-    // Store all commands and tokens in cmdVector
-    while (st.hasMoreTokens()) {
-      cmdVector.insertElementAt(st.nextToken(), pos++);
+    try {
+      parseInput(new StringReader(in));
+    } catch (IOException e) {
+      // a StringReader does not throw
     }
+  }
 
+  public void parseInput(Reader in) throws IOException {
     if (DEBUG)
-      System.out.println("Debug: End parsing input.");
+      System.out.println("Debug: Start parsing input.");
+
+    tokens = new GerberTokenizer(in);
   }
 
 
@@ -504,9 +534,9 @@ class Plotter {
     // As long as there are more commands avaliable continue
     // If a command is found and executed, the position will be incremented
     // in those methods, so we don't need to do it here.
-    while (pos < cmdVector.size()) {
-      // Get the current command from the cmdVector
-      cmd = (String) cmdVector.elementAt(pos);
+    while (tokens.current() != null) {
+      // Get the current command from the tokenizer
+      cmd = tokens.current();
 
       if (cmd == null) {
         cmd = "";
@@ -528,13 +558,13 @@ class Plotter {
             System.out.println("Debug: End of extended command");
         }
 
-        pos++;
+        nextCmd();
         //continue;
       }
 
       // Always skip the dang "*" tokens as they don't interest
       if (cmd.equals("*")) {
-        pos++;
+        nextCmd();
         //continue;
       }
 
@@ -590,18 +620,29 @@ class Plotter {
 
 
 
+  //
+  // Advances to the next command or token. pos keeps counting the commands
+  // processed, as it is also used to label the layout primitives.
+  //
+  private void nextCmd() throws IOException {
+    pos++;
+    tokens.next();
+  }
+
+
+
   //
   // Handles an eXtended RS-274X command. They always start with a 2
   // character specifier, followed by various parameters, sometimes even
   // more commands.
   //
-  private boolean handleExtendedCmd() {
+  private boolean handleExtendedCmd() throws IOException {
     String          cmd;
 
     // As long as there are more command available
-    while (pos < cmdVector.size()) {
-      // Get the current command from the cmdVector
-      cmd = (String) cmdVector.elementAt(pos);
+    while (tokens.current() != null) {
+      // Get the current command from the tokenizer
+      cmd = tokens.current();
 
       // see if this helps gcj
       if (cmd == null) {
@@ -635,6 +676,23 @@ class Plotter {
           }
         }
 
+        // Aperture macro. The statements of its body follow as separate
+        // commands up to the end of the extended command. They are
+        // compiled once, and evaluated by each ADD using the macro.
+        if (cmd.startsWith("AM")) {
+          String macroName = cmd.substring(2);
+          ArrayList<String> body = new ArrayList<String>();
+          nextCmd();
+          while (tokens.current() != null && !tokens.current().equals("%")) {
+            if (!tokens.current().equals("*")) {
+              body.add(tokens.current());
+            }
+            nextCmd();
+          }
+          macros.put(macroName, new ApertureMacro(macroName, body));
+          return true;
+        }
+
         // Aperture definition. This is a pretty complex thing, i hope
         // i'm doing it right. :)
         if (cmd.startsWith("ADD")) {
@@ -644,49 +702,35 @@ class Plotter {
           if (cmd == null) {
             cmd = "";
           }
-
-
-          // New circle aperture
+          // New circle, rectangle, obround or polygon aperture,
+          // or otherwise an instance of an aperture macro
+          int shape = MACRO;
+          String macroName = "";
           if (cmd.startsWith("C,")) {
-            ad[pd][0] = CIRCLE;
+            shape = CIRCLE;
             cmd = cmd.substring(2);
-          }
-          if (cmd == null) {
-            cmd = "";
-          }
-
-          // New circle aperture
-          if (cmd.startsWith("R,")) {
-            ad[pd][0] = RECTANGLE;
+          } else if (cmd.startsWith("R,")) {
+            shape = RECTANGLE;
             cmd = cmd.substring(2);
-          }
-          if (cmd == null) {
-            cmd = "";
-          }
-
-          // New circle aperture
-          if (cmd.startsWith("O,")) {
-            ad[pd][0] = OVAL;
+          } else if (cmd.startsWith("O,")) {
+            shape = OVAL;
             cmd = cmd.substring(2);
-          }
-          if (cmd == null) {
-            cmd = "";
-          }
-
-          // New circle aperture
-          if (cmd.startsWith("P,")) {
-            ad[pd][0] = POLYGON;
+          } else if (cmd.startsWith("P,")) {
+            shape = POLYGON;
             cmd = cmd.substring(2);
-          }
-          if (cmd == null) {
-            cmd = "";
+          } else if (cmd.indexOf(',') != -1) {
+            macroName = cmd.substring(0, cmd.indexOf(','));
+          } else {
+            macroName = cmd;
           }
 
-          nl = 1;
-          StringTokenizer st = new StringTokenizer(cmd, "X");
-          while (st.hasMoreTokens()) {
-            ad[pd][nl++] = parseDouble(st.nextToken());
+          StringTokenizer st
+              = new StringTokenizer(cmd.substring((shape == MACRO) ? macroName.length() : 0), ",X");
+          double [] params = new double[st.countTokens()];
+          for (nl = 0; nl < params.length; nl++) {
+            params[nl] = parseDouble(st.nextToken());
           }
+          apertures.put(pd, newAperture(shape, macroName, params));
         }
 
         // Axis selection. We simply skip it, as portrait or land-
@@ -839,7 +883,7 @@ class Plotter {
       }
 
       // Advance to next command
-      pos++;
+      nextCmd();
     }
 
     return true;
@@ -870,9 +914,9 @@ class Plotter {
     }
 
     // As long as there are more command available
-    while (pos < cmdVector.size()) {
-      // Get the current command from the cmdVector
-      cmd = (String) cmdVector.elementAt(pos);
+    while (tokens.current() != null) {
+      // Get the current command from the tokenizer
+      cmd = tokens.current();
 
       // see if this helps with gcj:
       if (cmd == null) {
@@ -1242,6 +1286,9 @@ class Plotter {
                     
       // here endeth EH addition
 
+      drawingAperture = apertures.get(d);
+      flashingAperture = flashable(drawingAperture);
+
       // Have we been filling polygons?!
       if (areafill) {
         // Do we have to draw a partially filled arc?! Then call our
@@ -1321,7 +1368,7 @@ class Plotter {
             if (DEBUG)
               System.out.println("Debug: Drawing line ("+x+","+y+")-("+nx+","+ny+")");
             if (!getDim) {
-              drawLineAperture(d, x, y, nx, ny);
+              drawLineAperture(x, y, nx, ny);
             }
           }
         }
@@ -1329,7 +1376,7 @@ class Plotter {
           if (DEBUG)
             System.out.println("Debug: Flashing aperture ("+x+","+y+")");
           if (!getDim) {
-            flashAperture(d, nx, ny);
+            flashAperture(flashingAperture, nx, ny);
           }
         }
       }
@@ -1357,7 +1404,7 @@ class Plotter {
       areafill = nareafill;
 
       // Advance to next command
-      pos++;
+      nextCmd();
     }
 
     if (!headless) {
@@ -1463,18 +1510,13 @@ class Plotter {
 
   //
   // The extended command IF allows a file to be included. To do this we
-  // internally read the file and call out plotInput method again with the
-  // file we just read. Clever, eh?! :)
+  // open the file and push it onto the tokenizer, which then reads it
+  // before carrying on with the current input.
   //
   private void includeFile(String file) {
-    String nin;
-
-    nin = "";	// Init new input
+    BufferedReader br;
 
     try {
-      BufferedReader br;
-      String         line;
-
       if (DEBUG)
         System.out.println("Debug: Opening input file "+file);
 
@@ -1483,26 +1525,15 @@ class Plotter {
       if (DEBUG)
         System.out.println("Debug: Reading input file "+file);
 
-      line = br.readLine();
-      while (line != null) {
-        nin += line;
-        line = br.readLine();
-      }
-
-      if (DEBUG)
-        System.out.println("Debug: Closing input file "+file);
-
-      br.close();
+      // the file is read after the "*%" which ends the IF command
+      tokens.include(br, 2);
     }
     catch (Exception e) {
       System.out.println("Error: Couldn't read input file "+file);
-      nin = "";
     }
 
     if (DEBUG)
       System.out.println("Debug: Input file read.");
-
-    parseInput(nin, pos+3);
   }
 
 
@@ -1649,14 +1680,14 @@ class Plotter {
 
       if (!headless) {
         for (;arc > 0; arc -=step) {
-          flashAperture(d, cx+radius*Math.cos((start+arc)*Math.PI/180),
+          flashAperture(flashingAperture, cx+radius*Math.cos((start+arc)*Math.PI/180),
                         cy+radius*Math.sin((start+arc)*Math.PI/180));
         }
       }
       if(generatePCBelements && !mirroredYaxis) {
-        generateArc(cx, cy, metric, start, arc, radius, ad[d][1]);
+        generateArc(cx, cy, metric, start, arc, radius, thickness(drawingAperture));
       } else if(generatePCBelements && mirroredYaxis) {
-        generateArc(-cx, cy, metric, start, arc, radius, ad[d][1]);
+        generateArc(-cx, cy, metric, start, arc, radius, thickness(drawingAperture));
       }
     }
   }
@@ -1669,132 +1700,55 @@ class Plotter {
   // This has the other advantage that the drawing code are now abstracted as
   // well and can therefore now easily be adapted and/or extended without
   // changes to the parsing and processing engine. This first method simply
-  // flashes the given aperture at the given coordinate. If no aperture is
-  // defined for that one, we use the standard, a solid circle with a
-  // diameter of .025.
+  // flashes the given aperture at the given coordinate. Each type of
+  // aperture knows how to flash itself.
   //
-  private void flashAperture(int d, double x, double y) {
-    // If no aperture was defined fall back to default aperture
-    if (ad[d][0] == 0)
-      d = 10;
-
-    if (ad[d][0] == CIRCLE) {
-      if (!headless) {
-        g.fillArc(aX(x-ad[d][1]/2),
-                  aY(y+ad[d][1]/2),
-                  dX(ad[d][1]),
-                  dY(ad[d][1]),
-                  0,
-                  360);
-        bg.fillArc(aX(x-ad[d][1]/2),
-                   aY(y+ad[d][1]/2),
-                   dX(ad[d][1]),
-                   dY(ad[d][1]),
-                   0,
-                   360);
-      }
-      // pcb element output
-      // we can use the existing metric flag
-      if(generatePCBelements && !mirroredYaxis) {
-        generatePad(x,y,metric,ad[d][0],ad[d][1],ad[d][1]);
-      } else if(generatePCBelements && mirroredYaxis) {
-        generatePad(-x,y,metric,ad[d][0],ad[d][1],ad[d][1]);
-      }
-
-      // end pcb element output
-
-      return;
+  private void flashAperture(Aperture a, double x, double y) {
+    if (a != null) {
+      a.flash(x, y);
     }
+  }
 
-    if (ad[d][0] == RECTANGLE) {
-      if (!headless) {
-        g.fillRect(aX(x-ad[d][1]/2),
-                   aY(y+ad[d][2]/2),
-                   dX(ad[d][1]) + 1,
-                   dY(ad[d][2]) + 1);
-        bg.fillRect(aX(x-ad[d][1]/2),
-                    aY(y+ad[d][2]/2),
-                    dX(ad[d][1]) + 1,
-                    dY(ad[d][2]) + 1);
-      }
-      // pcb element output
-      // we can use the existing metric flag
-      if(generatePCBelements && !mirroredYaxis) {
-        generatePad(x,y,metric,ad[d][0],ad[d][1],ad[d][2]);
-      } else if(generatePCBelements && mirroredYaxis) {
-        generatePad(-x,y,metric,ad[d][0],ad[d][1],ad[d][2]);
-      }
 
-      // end pcb element output
 
-      return;
+  //
+  // Sets the colour drawn with, black for 0 and white for 1
+  //
+  private void setGraphicsColor(int color) {
+    if (!headless) {
+      g.setColor(color == 0 ? Color.black : Color.white);
+      bg.setColor(color == 0 ? Color.black : Color.white);
     }
+  }
 
-    if (ad[d][0] == OVAL) {
-      if (!headless) {
-        g.fillArc(aX(x-ad[d][1]/2),
-                  aY(y+ad[d][2]/2),
-                  dX(ad[d][1]) + 1,
-                  dY(ad[d][2]) + 1,
-                  0,
-                  360);
-        bg.fillArc(aX(x-ad[d][1]/2),
-                   aY(y+ad[d][2]/2),
-                   dX(ad[d][1]) + 1,
-                   dY(ad[d][2]) + 1,
-                   0,
-                   360);
-      }
 
-      // pcb element output
-      // we can use the existing metric flag
-      if(generatePCBelements && !mirroredYaxis) {
-        generatePad(x,y,metric,ad[d][0],ad[d][1],ad[d][2]);
-      } else if(generatePCBelements && mirroredYaxis) {
-        generatePad(-x,y,metric,ad[d][0],ad[d][1],ad[d][2]);
-        // end pcb element output
+
+  //
+  // If no aperture, or one we can't draw, was defined for a D-code we fall
+  // back to the standard aperture D10, by default a solid circle with a
+  // diameter of .025.
+  //
+  private Aperture flashable(Aperture a) {
+    if (a == null || !a.canFlash()) {
+      a = apertures.get(10);
+      if (a != null && !a.canFlash()) {
+        a = null;
       }
-      return;
     }
+    return a;
+  }
 
-    if (ad[d][0] == POLYGON) {
-      Polygon p;
-      double radius;
-      double arc;
-      double cx;
-      double cy;
-      int s;
-      int max;
-      // format of gerber P directive is
-      // P, outer D, # vertices, rotation +ve degrees CCW, hole D
-      // Calculate the radius first
-      radius = ad[d][1]/2.0;
-      max    = (int) ad[d][2];
-      arc    = ad[d][3];
-      p      = new Polygon();
 
-      for (s = 0; s<max; s++) {
-        cx = x+radius*Math.cos((arc+360*s/max)*Math.PI/180);
-        cy = y+radius*Math.sin((arc+360*s/max)*Math.PI/180);
-        p.addPoint(aX(cx), aY(cy));
-      }
 
-      // here. we try to identify square pads or pins & fail 
-      if (generatePCBelements && !mirroredYaxis) { // && (max <= 9) && (convertToNanometres(radius, metric) < 4000000)) {
-        // i.e square pad < 8mm "round" at vertex
-        generatePad(x,y,metric,RECTANGLE,(ad[d][1]/1.414214),(ad[d][1]/1.414214));
-        System.out.println("Vertices: " + ad[d][2] +
-                           "Radius: " + ad[d][1] +
-                           "Rotation: " + ad[d][3]);
-      } else if (generatePCBelements && mirroredYaxis) { 
-        generatePad(-x,y,metric,RECTANGLE,(ad[d][1]/1.414214),(ad[d][1]/1.414214));
-      }
-      if (!headless) {
-        g.fillPolygon(p);
-        bg.fillPolygon(p);
-      }
-      return;
+  //
+  // Lines and arcs are drawn with the width of the aperture, or 0 if
+  // none was defined for the D-code.
+  //
+  private double thickness(Aperture a) {
+    if (a == null) {
+      return 0.0;
     }
+    return a.width();
   }
 
 
@@ -1815,16 +1769,16 @@ class Plotter {
   // PII, PIII or even Athlon or Alpha ;).
   //
 
-  private void drawLineAperture(int d, double x, double y, double nx, double ny) {
+  private void drawLineAperture(double x, double y, double nx, double ny) {
     int dx, dy, max;
     double ix, iy;
 
     // pcb element output
     // we can use the existing metric flag
     if(generatePCBelements && !mirroredYaxis) {
-          generateLine(x, y, metric, ad[d][1], ad[d][0], nx, ny);
+          generateLine(x, y, metric, thickness(drawingAperture), nx, ny);
     } else if(generatePCBelements && mirroredYaxis) {
-          generateLine(-x, y, metric, ad[d][1], ad[d][0], -nx, ny);
+          generateLine(-x, y, metric, thickness(drawingAperture), -nx, ny);
     }
 
     // end pcb element output
@@ -1842,7 +1796,7 @@ class Plotter {
 
     for(;max>0;max--) {
       if (!generatePCBelements) {
-        flashAperture(d, x, y);
+        flashAperture(flashingAperture, x, y);
       }
       x += ix;
       y += iy;
@@ -1869,16 +1823,34 @@ class Plotter {
     if (shape == RECTANGLE) {
       kicadShape = 'R';
     }
+    // stacked flashes of the same aperture only need one pad
+    if (layout.duplicatePad(xNm, -yNm, xsizeNm, ysizeNm, kicadShape) != null) {
+      return;
+    }
     Pad p = new Pad();
     // this will become a lihata padstack by default 
-    p.populateGerberElement(xsizeNm, ysizeNm, xNm, yNm, kicadShape, "SMD", pos);
+    long drill = drillFor(xNm, -yNm, xsizeNm, ysizeNm);
+    p.populateGerberElement(xsizeNm, ysizeNm, xNm, yNm, kicadShape,
+                            (drill > 0) ? "STD" : "SMD", drill, pos);
     footprint.add(p);
+    layout.addPad(xNm, -yNm, xsizeNm, ysizeNm, kicadShape);
+  }
+
+  // pads with a hole drilled through them become plated through hole
+  // padstacks, rather than SMD pads. Coordinates are in nanometres,
+  // with the y axis of the gerber
+  private long drillFor(long x, long y, long width, long height) {
+    if (drills == null) {
+      return 0;
+    }
+    return drills.drillFor(x, y, width, height);
   }
 
   private void generatePolyPourNm(LongPolygon longPoints) {
     PolyPour pp = new PolyPour();
     pp.populateGerberElement(longPoints.xcoords(),
                              longPoints.ycoords(),
+                             longPoints.npoints(),
                              pos);
     footprint.add(pp);
   }
@@ -1892,13 +1864,18 @@ class Plotter {
     if (adx == 0) {
       adx = ady;
     }
+    if (layout.duplicatePad(x, y, adx, ady, 'R') != null) {
+      return;
+    }
     // this will become a lihata padstack by default 
     Pad p = new Pad();
-    p.populateGerberElement(adx, ady, x, -y, 'R', "SMD", pos);
+    long drill = drillFor(x, y, adx, ady);
+    p.populateGerberElement(adx, ady, x, -y, 'R', (drill > 0) ? "STD" : "SMD", drill, pos);
     footprint.add(p);
+    layout.addPad(x, y, adx, ady, 'R');
   }
 
-  private void generateLine(double x, double y, boolean metric, double thickness, double shape, double nx, double ny) {
+  private void generateLine(double x, double y, boolean metric, double thickness, double nx, double ny) {
       
     long xNm = convertToNanometres(x, metric);
     // y axis is in other direction on gerbers
@@ -1938,13 +1915,296 @@ class Plotter {
     //System.out.println("arc done: " + pos);
   }
 
+  //
+  // Factory for the apertures defined by %ADD...*% commands. Missing
+  // parameters are taken as zero, as they were in the old fixed table.
+  //
+  private Aperture newAperture(int shape, String name, double[] params) {
+    switch (shape) {
+    case CIRCLE:
+      return new CircleAperture(params);
+    case RECTANGLE:
+      return new RectangleAperture(RECTANGLE, params);
+    case OVAL:
+      return new RectangleAperture(OVAL, params);
+    case POLYGON:
+      return new PolygonAperture(params);
+    default:
+      return new MacroAperture(name, params);
+    }
+  }
+
+  //
+  // An aperture in the dictionary, keyed by its D-code. Apertures are
+  // never modified once defined, so a redefinition of a D-code simply
+  // replaces the entry.
+  //
+  private abstract class Aperture {
+
+    int shape;
+    double[] params;
+
+    Aperture(int shape, double[] params) {
+      this.shape = shape;
+      this.params = params;
+    }
+
+    double param(int index) {
+      if (index < params.length) {
+        return params[index];
+      }
+      return 0.0;
+    }
+
+    // the width used when drawing lines and arcs with the aperture
+    double width() {
+      return param(0);
+    }
+
+    boolean canFlash() {
+      return true;
+    }
+
+    abstract void flash(double x, double y);
+  }
+
+  private class CircleAperture extends Aperture {
+
+    CircleAperture(double[] params) {
+      super(CIRCLE, params);
+    }
+
+    void flash(double x, double y) {
+      double diameter = param(0);
+      if (!headless) {
+        g.fillArc(aX(x-diameter/2),
+                  aY(y+diameter/2),
+                  dX(diameter),
+                  dY(diameter),
+                  0,
+                  360);
+        bg.fillArc(aX(x-diameter/2),
+                   aY(y+diameter/2),
+                   dX(diameter),
+                   dY(diameter),
+                   0,
+                   360);
+      }
+      // pcb element output
+      // we can use the existing metric flag
+      if(generatePCBelements && !mirroredYaxis) {
+        generatePad(x,y,metric,shape,diameter,diameter);
+      } else if(generatePCBelements && mirroredYaxis) {
+        generatePad(-x,y,metric,shape,diameter,diameter);
+      }
+      // end pcb element output
+    }
+  }
+
+  // rectangles and obrounds share their X by Y parameters
+  private class RectangleAperture extends Aperture {
+
+    RectangleAperture(int shape, double[] params) {
+      super(shape, params);
+    }
+
+    void flash(double x, double y) {
+      double width = param(0);
+      double height = param(1);
+      if (!headless && shape == RECTANGLE) {
+        g.fillRect(aX(x-width/2),
+                   aY(y+height/2),
+                   dX(width) + 1,
+                   dY(height) + 1);
+        bg.fillRect(aX(x-width/2),
+                    aY(y+height/2),
+                    dX(width) + 1,
+                    dY(height) + 1);
+      } else if (!headless) {
+        g.fillArc(aX(x-width/2),
+                  aY(y+height/2),
+                  dX(width) + 1,
+                  dY(height) + 1,
+                  0,
+                  360);
+        bg.fillArc(aX(x-width/2),
+                   aY(y+height/2),
+                   dX(width) + 1,
+                   dY(height) + 1,
+                   0,
+                   360);
+      }
+      // pcb element output
+      // we can use the existing metric flag
+      if(generatePCBelements && !mirroredYaxis) {
+        generatePad(x,y,metric,shape,width,height);
+      } else if(generatePCBelements && mirroredYaxis) {
+        generatePad(-x,y,metric,shape,width,height);
+      }
+      // end pcb element output
+    }
+  }
+
+  private class PolygonAperture extends Aperture {
+
+    PolygonAperture(double[] params) {
+      super(POLYGON, params);
+    }
+
+    void flash(double x, double y) {
+      Polygon p;
+      double radius;
+      double arc;
+      double cx;
+      double cy;
+      int s;
+      int max;
+      // format of gerber P directive is
+      // P, outer D, # vertices, rotation +ve degrees CCW, hole D
+      // Calculate the radius first
+      radius = param(0)/2.0;
+      max    = (int) param(1);
+      arc    = param(2);
+      p      = new Polygon();
+
+      for (s = 0; s<max; s++) {
+        cx = x+radius*Math.cos((arc+360*s/max)*Math.PI/180);
+        cy = y+radius*Math.sin((arc+360*s/max)*Math.PI/180);
+        p.addPoint(aX(cx), aY(cy));
+      }
+
+      // here. we try to identify square pads or pins & fail 
+      if (generatePCBelements && !mirroredYaxis) { // && (max <= 9) && (convertToNanometres(radius, metric) < 4000000)) {
+        // i.e square pad < 8mm "round" at vertex
+        generatePad(x,y,metric,RECTANGLE,(param(0)/1.414214),(param(0)/1.414214));
+        System.out.println("Vertices: " + param(1) +
+                           "Radius: " + param(0) +
+                           "Rotation: " + param(2));
+      } else if (generatePCBelements && mirroredYaxis) { 
+        generatePad(-x,y,metric,RECTANGLE,(param(0)/1.414214),(param(0)/1.414214));
+      }
+      if (!headless) {
+        g.fillPolygon(p);
+        bg.fillPolygon(p);
+      }
+    }
+  }
+
+  //
+  // An aperture macro instance. The macro is evaluated with the ADD
+  // parameters just once, and the resulting shapes are kept with the
+  // D-code for all of its flashes. For layout output the shapes are
+  // approximated by a single pad, round for a lone circle, otherwise
+  // the rectangle bounding the exposed shapes. An instance of an
+  // undefined macro flashes the standard aperture instead, and lines
+  // are drawn with no width.
+  //
+  private class MacroAperture extends Aperture {
+
+    String name;
+    ArrayList<ApertureMacro.Shape> shapes;
+    int padShape = RECTANGLE;
+    double padX;
+    double padY;
+    double padWidth;
+    double padHeight;
+
+    MacroAperture(String name, double[] params) {
+      super(MACRO, params);
+      this.name = name;
+      ApertureMacro macro = macros.get(name);
+      if (macro == null) {
+        return;
+      }
+      shapes = macro.instantiate(params);
+      double minX = Double.MAX_VALUE;
+      double maxX = -Double.MAX_VALUE;
+      double minY = Double.MAX_VALUE;
+      double maxY = -Double.MAX_VALUE;
+      for (ApertureMacro.Shape shape : shapes) {
+        if (shape.exposure) {
+          minX = Math.min(minX, shape.minX());
+          maxX = Math.max(maxX, shape.maxX());
+          minY = Math.min(minY, shape.minY());
+          maxY = Math.max(maxY, shape.maxY());
+        }
+      }
+      if (minX > maxX) {
+        return; // nothing exposed
+      }
+      if (shapes.size() == 1 && shapes.get(0).circle) {
+        padShape = CIRCLE;
+      }
+      padX = (minX + maxX)/2;
+      padY = (minY + maxY)/2;
+      padWidth = maxX - minX;
+      padHeight = maxY - minY;
+    }
+
+    double width() {
+      return 0.0;
+    }
+
+    boolean canFlash() {
+      return shapes != null;
+    }
+
+    void flash(double x, double y) {
+      if (!headless) {
+        for (ApertureMacro.Shape shape : shapes) {
+          // exposure off draws in the colour of the other polarity
+          setGraphicsColor(shape.exposure ? drawColor : 1 - drawColor);
+          if (shape.circle) {
+            g.fillArc(aX(x+shape.cx-shape.diameter/2),
+                      aY(y+shape.cy+shape.diameter/2),
+                      dX(shape.diameter),
+                      dY(shape.diameter),
+                      0,
+                      360);
+            bg.fillArc(aX(x+shape.cx-shape.diameter/2),
+                       aY(y+shape.cy+shape.diameter/2),
+                       dX(shape.diameter),
+                       dY(shape.diameter),
+                       0,
+                       360);
+          } else {
+            Polygon p = new Polygon();
+            for (int s = 0; s < shape.xs.length; s++) {
+              p.addPoint(aX(x+shape.xs[s]), aY(y+shape.ys[s]));
+            }
+            g.fillPolygon(p);
+            bg.fillPolygon(p);
+          }
+        }
+        setGraphicsColor(drawColor);
+      }
+      // pcb element output
+      // we can use the existing metric flag
+      if (padWidth == 0 && padHeight == 0) {
+        return;
+      }
+      if(generatePCBelements && !mirroredYaxis) {
+        generatePad(x+padX,y+padY,metric,padShape,padWidth,padHeight);
+      } else if(generatePCBelements && mirroredYaxis) {
+        generatePad(-(x+padX),y+padY,metric,padShape,padWidth,padHeight);
+      }
+      // end pcb element output
+    }
+  }
+
   private class LongPolygon {
 
     int vertexCount = 0;
     int pointCount = 0;
 
-    ArrayList<Long> xcoords = new ArrayList<Long>();
-    ArrayList<Long> ycoords = new ArrayList<Long>();
+    // vertex coordinates, of which the first pointCount are in use,
+    // and their extents, which are kept up to date as points are added
+    long [] xcoords = new long[16];
+    long [] ycoords = new long[16];
+    long xMin = 0;
+    long xMax = 0;
+    long yMin = 0;
+    long yMax = 0;
     long yPosition = 0;
     long xPosition = 0;
 
@@ -1960,11 +2220,11 @@ class Plotter {
       yPosition = y;
     }
 
-    public ArrayList<Long> xcoords() {
+    public long [] xcoords() {
       return xcoords;
     }
 
-    public ArrayList<Long> ycoords() {
+    public long [] ycoords() {
       return ycoords;
     }
     
@@ -1978,13 +2238,33 @@ class Plotter {
     }
 
     public void addPoint(long x, long y) {
-      xcoords.add(x);
-      ycoords.add(y);
-      vertexCount = xcoords.size();
+      if (pointCount == xcoords.length) {
+        long [] newX = new long[2*pointCount];
+        long [] newY = new long[2*pointCount];
+        System.arraycopy(xcoords, 0, newX, 0, pointCount);
+        System.arraycopy(ycoords, 0, newY, 0, pointCount);
+        xcoords = newX;
+        ycoords = newY;
+      }
+      if (pointCount == 0 || x < xMin) {
+        xMin = x;
+      }
+      if (pointCount == 0 || x > xMax) {
+        xMax = x;
+      }
+      if (pointCount == 0 || y < yMin) {
+        yMin = y;
+      }
+      if (pointCount == 0 || y > yMax) {
+        yMax = y;
+      }
+      xcoords[pointCount] = x;
+      ycoords[pointCount] = y;
       if (DEBUG) {
         System.out.println("Added longPoly points: x : " + x + ", y: " + y);
       }
       pointCount++;
+      vertexCount = pointCount;
     }
 
     public int vertexCount() {
@@ -1992,85 +2272,25 @@ class Plotter {
     }
 
     public long centroidX() {
-      long Xcentroid = 0;
-      if (xcoords.size() == 0) {
+      if (pointCount == 0) {
         return 0;
       }
-      long Xmax = xcoords.get(0);
-      long Xmin = xcoords.get(0);
-      for (int i = 1; i < xcoords.size(); i ++) {
-        if (Xmax < xcoords.get(i)) {
-          Xmax = xcoords.get(i);
-        }
-        if (Xmin > xcoords.get(i)) {
-          Xmin = xcoords.get(i);
-        }
-      }
-      Xcentroid = (Xmax - Xmin)/2 + Xmin;
-      return Xcentroid;
+      return (xMax - xMin)/2 + xMin;
     }
 
     public long centroidY() {
-      if (ycoords.size() == 0) {
+      if (pointCount == 0) {
         return 0;
       }
-      long Ycentroid = 0;
-      long Ymax = ycoords.get(0);
-      long Ymin = ycoords.get(0);
-      for (int i = 1; i < ycoords.size(); i ++) {
-        if (Ymax < ycoords.get(i)) {
-          Ymax = ycoords.get(i);
-        }
-        if (Ymin > ycoords.get(i)) {
-          Ymin = ycoords.get(i);
-        }
-      }
-      Ycentroid = (Ymax - Ymin)/2 + Ymin;
-      return Ycentroid;      
+      return (yMax - yMin)/2 + yMin;
     }
 
     public long xSize(){
-      long xSize = 0;
-      if (xcoords.size() == 0) {
-        return 0;
-      }
-      long Xmax = xcoords.get(0);
-      long Xmin = xcoords.get(0);
-      for (int i = 1; i < xcoords.size(); i ++) {
-        if (Xmax < xcoords.get(i)) {
-          Xmax = xcoords.get(i);
-        }
-        if (Xmin > xcoords.get(i)) {
-          Xmin = xcoords.get(i);
-        }
-      }
-      xSize = (Xmax - Xmin);
-      if (xSize < 0) {
-        xSize = -xSize;
-      }
-      return xSize;
+      return xMax - xMin; // zero if there are no points
     }
 
     public long ySize() {
-      long ySize = 0;
-      if (ycoords.size() == 0) {
-        return 0;
-      }
-      long Ymax = ycoords.get(0);
-      long Ymin = ycoords.get(0);
-      for (int i = 1; i < ycoords.size(); i ++) {
-        if (Ymax < ycoords.get(i)) {
-          Ymax = ycoords.get(i);
-        }
-        if (Ymin > ycoords.get(i)) {
-          Ymin = ycoords.get(i);
-        }
-      }
-      ySize = (Ymax - Ymin);
-      if (ySize < 0) {
-        ySize = -ySize;
-      }
-      return ySize;
+      return yMax - yMin;
     }
 
     public boolean likelyPad() {
@@ -2088,8 +2308,10 @@ class Plotter {
     public void clearPolygon() {
       pointCount = 0;
       vertexCount = 0;
-      xcoords.clear();
-      ycoords.clear();
+      xMin = 0;
+      xMax = 0;
+      yMin = 0;
+      yMax = 0;
     }
 
   }
@@ -25,7 +25,7 @@
 
 /**
  *
- * This class is passed a pair of ArrayList<long> objects, with
+ * This class is passed a pair of long[] arrays, with
  * x and y coordinates for the polygon's vertices, or can be built
  * up point wise by addition of pairs of coordinates
  *
@@ -37,16 +37,19 @@
  *
  */
 
-import java.util.ArrayList;
-
 public class PolyPour extends FootprintElementArchetype
 {
-  ArrayList<Long> xCoord = new ArrayList<Long>();
-  ArrayList<Long> yCoord = new ArrayList<Long>();
+  // vertex coordinates, of which the first vertexCount are in use
+  long [] xCoord = new long[16];
+  long [] yCoord = new long[16];
+  int vertexCount = 0;
   
   long xCoordNm = 0;
   long yCoordNm = 0;
   int kicadLayer = 0;
+  // only an element moved by a gerber job is routed to the bottom
+  // copper and mask layers, other conversions keep their layers
+  boolean layerMoved = false;
 
   String output = "";
   
@@ -56,19 +59,30 @@ public class PolyPour extends FootprintElementArchetype
   }
 
   public PolyPour() {
-    xCoord.clear();
-    yCoord.clear();
   }
 
-  public PolyPour(ArrayList<Long> xCoords,
-                  ArrayList<Long> yCoords,
+  public PolyPour(long [] xCoords,
+                  long [] yCoords,
+                  int count,
                   int pinNum) {
-    xCoord.clear();
-    yCoord.clear();
-    populateGerberElement(xCoords, yCoords, pinNum);
+    populateGerberElement(xCoords, yCoords, count, pinNum);
     kicadLayer = 15; // top copper default
   }
 
+  private void addVertex(long x, long y) {
+    if (vertexCount == xCoord.length) {
+      long [] newX = new long[2*vertexCount + 16];
+      long [] newY = new long[2*vertexCount + 16];
+      System.arraycopy(xCoord, 0, newX, 0, vertexCount);
+      System.arraycopy(yCoord, 0, newY, 0, vertexCount);
+      xCoord = newX;
+      yCoord = newY;
+    }
+    xCoord[vertexCount] = x;
+    yCoord[vertexCount] = y;
+    vertexCount++;
+  }
+
 /* <polygon width="0.127" layer="1">
 <vertex x="-1.2" y="0.7"/>
 <vertex x="-1.2" y="-0.8"/>
@@ -111,14 +125,12 @@ public class PolyPour extends FootprintElementArchetype
       }
       if (coordCount == 2
           && previousArc == false && pendingArc == false) {
-        xCoord.add(x); // simplest scenario
-        yCoord.add(y);
+        addVertex(x, y); // simplest scenario
         //        System.out.println("Added x: " + x + ", and y: "
         //                   + y + " to poly pour."); 
       } else if (coordCount == 2
                  && previousArc == false && pendingArc == true) {
-        xCoord.add(x); // next simplest scenario
-        yCoord.add(y);
+        addVertex(x, y); // next simplest scenario
         xOld = x;
         yOld = y;
         previousArc = true;
@@ -138,11 +150,9 @@ public class PolyPour extends FootprintElementArchetype
         long [] points = a.asSegments();
         //System.out.println("About to approximate arc with segments");
         for (int j = 2; j < (points.length - 2); j = j+2) {
-          xCoord.add(points[j]);
-          yCoord.add(-points[j+1]);
+          addVertex(points[j], -points[j+1]);
         }
-        xCoord.add(x);
-        yCoord.add(y);
+        addVertex(x, y);
         previousArc = false;
         if (pendingArc == true) {
           xOld = x;
@@ -159,8 +169,8 @@ public class PolyPour extends FootprintElementArchetype
       Arc a = new Arc(); // vertex definition
       String eagleCmd = "x1=" + xOld/1000000.0 + " " +
           "y1=" + (-yOld/1000000.0) + " " +
-          "x2=" + xCoord.get(0)/1000000.0 + " " +
-          "y2=" + (-yCoord.get(0)/1000000.0) + " " +
+          "x2=" + xCoord[0]/1000000.0 + " " +
+          "y2=" + (-yCoord[0]/1000000.0) + " " +
           "curve=" + previousDegrees + " " +
           "width=1.0";
       //System.out.println("Final Eagle arc descriptor: " + eagleCmd);
@@ -168,8 +178,7 @@ public class PolyPour extends FootprintElementArchetype
       long [] points = a.asSegments();
       //System.out.println("About to approximate arc with segments");
       for (int j = 2; j < (points.length - 2); j = j+2) {
-        xCoord.add(points[j]);
-        yCoord.add(-points[j+1]);
+        addVertex(points[j], -points[j+1]);
       }
     }
     //System.out.println("Done with PolyPour elements");
@@ -177,48 +186,45 @@ public class PolyPour extends FootprintElementArchetype
   }
 
   
-  public void populateGerberElement(ArrayList<Long> xCoords,
-                                    ArrayList<Long> yCoords,
+  // the arrays are kept by the pour, rather than copied, so the
+  // caller must not change them afterwards
+  public void populateGerberElement(long [] xCoords,
+                                    long [] yCoords,
+                                    int count,
                                     int pinNum) {
     kicadLayer = 15; // use top copper as default polygonal pour layer
-    for (long x : xCoords) {
-      xCoord.add(x);
-    }
-    for (long y : yCoords) {
-      yCoord.add(y);
-    }
+    xCoord = xCoords;
+    yCoord = yCoords;
+    vertexCount = count;
     // System.out.println("populated PolyPour object with " +
-    //                      + xCoords.size() + " vertices");
+    //                      + count + " vertices");
   }
   
-  public String lihataPolyPour(long xOffset, long yOffset, float magnificationRatio) {
-    String points = "";
+  public String lihataPolyPour(long xOffset, long yOffset, float magnificationRatio, ConversionContext context) {
     int exportMaxVertices = 10000;
-    int npoints = xCoord.size();
-    if (npoints == yCoord.size() && npoints < exportMaxVertices) {
-      for (int i = 0; i < npoints; i++) {
-        Long x = (long)((xOffset + xCoord.get(i))*magnificationRatio);
-        Long y = (long)((yOffset - yCoord.get(i))*magnificationRatio);
-        points = points
-            + "         { " + x + "nm; " + y + "nm }\n";
-      }
-      points =
-          "      ha:polygon." + pourCount++ + " {\n" +
-          "       ha:attributes {\n" +
-          "       }\n       li:geometry {\n        ta:contour {\n" +
-          points +
-          "        }\n       }\n       ha:flags {\n" +
-          "         clearpoly = 0\n       }\n      }\n";
+    if (vertexCount >= exportMaxVertices) {
+      return "";
+    }
+    StringBuilder points = new StringBuilder();
+    points.append("      ha:polygon.").append(context.pourCount++).append(" {\n")
+        .append("       ha:attributes {\n")
+        .append("       }\n       li:geometry {\n        ta:contour {\n");
+    for (int i = 0; i < vertexCount; i++) {
+      long x = (long)((xOffset + xCoord[i])*magnificationRatio);
+      long y = (long)((yOffset - yCoord[i])*magnificationRatio);
+      points.append("         { ").append(x).append("nm; ").append(y).append("nm }\n");
     }
-    return points;
+    points.append("        }\n       }\n       ha:flags {\n")
+        .append("         clearpoly = 0\n       }\n      }\n");
+    return points.toString();
   }
   
-  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format)
+  public String generateElement(long xOffset, long yOffset, float magnificationRatio, String format, ConversionContext context)
   {
     if (format.equals("pcb")) {
       return generateGEDAelement(xOffset, yOffset, magnificationRatio);
     } else {
-      return lihataPolyPour(xOffset, yOffset, magnificationRatio);
+      return lihataPolyPour(xOffset, yOffset, magnificationRatio, context);
     }
   }
 
@@ -228,6 +234,15 @@ public class PolyPour extends FootprintElementArchetype
     return output;
   }
 
+  // the outline keeps the gerber's y axis, which is flipped on export
+  public void addPreviewShapes(FootprintPreview preview) {
+    long [] layoutY = new long[vertexCount];
+    for (int i = 0; i < vertexCount; i++) {
+      layoutY[i] = -yCoord[i];
+    }
+    preview.polygon(this, xCoord, layoutY, vertexCount);
+  }
+
   public boolean isTop() {
     return kicadLayer == 21;
   }
@@ -236,4 +251,25 @@ public class PolyPour extends FootprintElementArchetype
     return kicadLayer == 15;
   }
 
+  public boolean isBottom() {
+    return layerMoved && kicadLayer == 20;
+  }
+
+  public boolean isBottomCopper() {
+    return layerMoved && kicadLayer == 0;
+  }
+
+  public boolean isTopMask() {
+    return layerMoved && kicadLayer == 23;
+  }
+
+  public boolean isBottomMask() {
+    return layerMoved && kicadLayer == 22;
+  }
+
+  public void setKicadLayer(int layer) {
+    kicadLayer = layer;
+    layerMoved = true;
+  }
+
 }
@@ -34,12 +34,13 @@ import java.util.Scanner;
 
 class QUCSParser extends CADParser {
 
-  public QUCSParser(String filename, boolean verbose) {
+  public QUCSParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File QUCSFile = new File(filename);
     if (!QUCSFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting format: " + symFormat);
+      System.out.println("Parsing: " + filename + " and exporting format: " + context.symFormat);
     }
   }
 
@@ -51,7 +52,7 @@ class QUCSParser extends CADParser {
   // 5) +ve Y is down
   // qucs files contain components, and nets, which can be turned
   // into a gschem schematic file
-  public static String [] convert(String QUCSsch) throws IOException {
+  public String [] convert(String QUCSsch) throws IOException {
     File input = new File(QUCSsch);
     Scanner inputQUCS = new Scanner(input);
     String currentLine = "";
@@ -232,15 +233,15 @@ class QUCSParser extends CADParser {
             } else {
               symAttributes = "refdes=" + tokens[1];
             }
-            SymbolText.resetSymbolTextAttributeOffsets();
+            context.resetSymbolTextAttributeOffsets();
             newSchematic = newSchematic
                 + "\n{"
-                + SymbolText.QUCSRefDesString(lastX,
+                + SymbolText.QUCSRefDesString(context, lastX,
                                               lastY,
                                               symAttributes);
             if (valueField != null) {
               newSchematic = newSchematic // it will be a touch lower
-                  + SymbolText.QUCSValueString(lastX, // vs. refdes
+                  + SymbolText.QUCSValueString(context, lastX, // vs. refdes
                                                lastY,
                                                valueField);
               valueField = null;
@@ -254,7 +255,7 @@ class QUCSParser extends CADParser {
     // we can now finalise the gschem schematic
     String networkName = schematicName + ".gschem.sch";
     // we now write the converted schematic data to a file
-    elementWrite(networkName, newSchematic);
+    elementWrite(context.outputDir + networkName, newSchematic);
     String [] returnedFilename = {networkName};
     return returnedFilename;
   }
@@ -31,12 +31,14 @@
 
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Scanner;
 import java.lang.StringBuffer;
 
 public class SourceBuffer {
 
-  private char[] source_buffer = null;
+  private byte[] source_buffer = null;
   private int source_index = 4;
   private int source_char = 0;
   private int bit = 0;
@@ -48,37 +50,16 @@ public class SourceBuffer {
   private int BGIstrokeDefOffset = 0;
   private int[] characterWidths;
   private int[] strokeOffsets; 
-  public SourceBuffer(String filename) {
-    FileInputStream input = null;
-    char [] ret_buffer = null; 
-    try {
-      input = new FileInputStream(filename);
-      int c;
-      char [] buffer = new char[1000];
-      int bufferIndex = 0;
-      // System.out.println("about to read bytes from file");
-      while ((c = input.read()) != -1) {
-        if (bufferIndex == buffer.length) {
-          char [] newBuffer = new char[buffer.length*2];
-          for (int index = 0; index < buffer.length; index++) {
-            newBuffer[index] = buffer[index];
-          }
-          buffer = newBuffer;
-        }
-        buffer[bufferIndex] = (char)c;
-        bufferIndex++;
-      }
-      ret_buffer = new char[bufferIndex];
-      for (int index = 0; index < bufferIndex; index++) {
-        ret_buffer[index] = buffer[index];
-      }
-      //System.out.println("finished reading bytes from file");
-      //      is_filled = true; // hack, should check
-      input.close();
-    } catch (Exception e) {
-      System.out.println ("Exception: " + e);
-    }
-    source_buffer = ret_buffer;
+
+  // unread bits are kept left justified in a 64 bit register which
+  // is refilled a byte at a time from source_buffer
+  private long bitRegister = 0;
+  private int bitRegisterCount = 1; // a leading 0 bit, see read_next_bit()
+  private int registerIndex = 4;
+
+  // the file is loaded with a single bulk read, and kept as bytes
+  public SourceBuffer(String filename) throws IOException {
+    source_buffer = Files.readAllBytes(Paths.get(filename));
   }
 
 
@@ -89,7 +70,7 @@ public class SourceBuffer {
       bit = 7;
       // System.out.println("About to get byte number " +
       //                   source_index + " from source buffer");
-      source_char = (int)source_buffer[source_index];
+      source_char = source_buffer[source_index] & 0xff;
       result = source_char & (1 << bit);
       source_index++;
     } else {
@@ -101,6 +82,35 @@ public class SourceBuffer {
     return result;
   }
 
+  // note that read_next_bit() returns a 0 bit before it fetches the
+  // first byte at source_index = 4, since bit starts at 0 rather
+  // than -1; the bit register starts with the same 0 bit in it so
+  // that both readers see identical bit streams
+
+  private void fillBitRegister() {
+    while (bitRegisterCount <= 56) {
+      long next = 0;
+      if (registerIndex < source_buffer.length) {
+        next = source_buffer[registerIndex] & 0xff;
+      } // past the end of the buffer we shift in zeros
+      registerIndex++;
+      bitRegister |= next << (56 - bitRegisterCount);
+      bitRegisterCount += 8;
+    }
+  }
+
+  public void skipBits(int count) { // count <= bitRegisterCount
+    bitRegister <<= count;
+    bitRegisterCount -= count;
+  }
+
+  // equivalent to source_index < source_buffer.length for
+  // read_next_bit(), i.e. the last byte has not yet been started
+  private boolean bitRegisterHasNextByte() {
+    int bitsConsumed = 1 + 8*(registerIndex - 4) - bitRegisterCount;
+    return (4 + (bitsConsumed + 6)/8) < source_buffer.length;
+  }
+
   public int readInt16() {
     int result = nextByte();
     result += 256*nextByte(); // little endian format int16
@@ -325,7 +335,7 @@ public class SourceBuffer {
     int result = 0;
       // System.out.println("About to get byte number " +
       //                   source_index + " from source buffer");
-    result = (int)source_buffer[source_index];
+    result = source_buffer[source_index] & 0xff;
     source_index++;
     bit = 7;
     // System.out.println("bit now: " + bit);
@@ -373,7 +383,96 @@ public class SourceBuffer {
     return size;
   }
 
+  // the array based ArrayNodeTree is used by default, but the
+  // original Node based NodeTree can be selected to compare outputs
+  private static boolean useNodeTree = false;
+
+  public static void setUseNodeTree(boolean legacy) {
+    useNodeTree = legacy;
+  }
+
   public String decode() {
+    if (useNodeTree) {
+      return decodeWithNodeTree();
+    }
+
+    int out_file_length = uncompressed_size();
+    StringBuffer sb = new StringBuffer(out_file_length);
+    int symbol = nextDecodedSymbol();
+    while (symbol != -1) {
+      sb.append((char)symbol);
+      symbol = nextDecodedSymbol();
+    }
+    return sb.toString();
+  }
+
+  // the decoded text can also be read incrementally, so that a parser
+  // can work through it without the whole file being held in memory
+  public Reader decodingReader() {
+    if (useNodeTree) {
+      return new StringReader(decodeWithNodeTree());
+    }
+    return new DecodingReader();
+  }
+
+  private class DecodingReader extends Reader {
+
+    public int read(char [] cbuf, int off, int len) {
+      int count = 0;
+      int symbol = 0;
+      while (count < len && (symbol = nextDecodedSymbol()) != -1) {
+        cbuf[off + count] = (char)symbol;
+        count++;
+      }
+      if (count == 0 && len > 0) {
+        return -1;
+      }
+      return count;
+    }
+
+    public void close() {
+      // nothing to release, the source bytes belong to the SourceBuffer
+    }
+  }
+
+  private ArrayNodeTree decodingTree = null;
+  private int decodedCount = 0;
+  private int decodedLength = 0;
+
+  // returns the next decoded symbol, or -1 once the text is finished
+  private int nextDecodedSymbol() {
+    if (decodingTree == null) {
+      decodingTree = new ArrayNodeTree();
+      decodedLength = uncompressed_size();
+    }
+    if (!bitRegisterHasNextByte() || decodedCount == decodedLength) {
+      return -1;
+    }
+    ArrayNodeTree tree = decodingTree;
+    // we walk the tree using a copy of the register, and only
+    // consume the bits once we have arrived at a leaf
+    fillBitRegister();
+    long window = bitRegister;
+    int depth = 0;
+    int node = ArrayNodeTree.ROOT;
+    while (!tree.isLeaf(node)) {
+      if (depth == bitRegisterCount) { // unusually deep leaf
+        skipBits(depth);
+        fillBitRegister();
+        window = bitRegister;
+        depth = 0;
+      }
+      node = tree.child[2*node + (int)(window >>> 63)];
+      window <<= 1;
+      depth++;
+    }
+    skipBits(depth);
+    tree.update(node);
+    decodedCount++;
+    return tree.symbol[node];
+  }
+
+  public String decodeWithNodeTree() {
 
     NodeTree tree = new NodeTree();
 
@@ -30,6 +30,7 @@
  *
  */
 
+import java.io.IOException;
 import java.util.Scanner;
 
 public class Symbol
@@ -238,12 +239,26 @@ public class Symbol
   }
 
   public String generateSymbol() {
-    return generateSymbol(0, "xschem"); // don't tweak pin spacings, default to xschem
+    return generateSymbol(0, new ConversionContext()); // don't tweak pin spacings, default to xschem
   }
 
-  public String generateSymbol(int spacing, String format)
+  public String generateSymbol(int spacing, ConversionContext context)
   {
-    String output = "";
+    StringBuilder output = new StringBuilder();
+    try {
+      writeSymbol(output, spacing, context);
+    } catch (IOException e) {
+      // appending to a StringBuilder does not throw
+    }
+    return output.toString();
+  }
+
+  // the symbol is written out an element at a time, rather than
+  // being assembled into a single String first
+  public void writeSymbol(Appendable output, int spacing, ConversionContext context)
+      throws IOException
+  {
+    String format = context.symFormat;
     // first, we need to snap thing to the grid if spacing != 0
     // System.out.println("Spacing passed to symbol: " + spacing);
     // we then add symbol definitions for pin elements and features, and
@@ -284,36 +299,33 @@ public class Symbol
     // before we do this, we need to reset the offsets used for text
     // invisible attributes by the SymbolText class, in case we
     // are batch processing lots of symbols
-    SymbolText.resetSymbolTextAttributeOffsets(xTranslate, yTranslate);
+    context.resetSymbolTextAttributeOffsets(xTranslate, yTranslate);
     for (int index = 0; index < symFeatureCount; index++) {
       String nextLine = symbolElements[index].toString(-xTranslate, -yTranslate, format);
-      output = output + nextLine;
+      output.append(nextLine);
       if (index < (symFeatureCount - 1) && (nextLine.length() != 0)) { // deals with empty toString values
-        output = output + "\n";
+        output.append("\n");
       }
     }
 
     if (spacing != 0) {
-      output = output
-          + temp.toString(-xTranslate, -yTranslate, format)
-          + "\n"
-          + temp.boundingBox(0,0).toString(-xTranslate, -yTranslate, format);
+      temp.writePins(output, -xTranslate, -yTranslate, context);
+      output.append("\n");
+      temp.boundingBox(0,0).writeElement(output, -xTranslate, -yTranslate, format);
       //      System.out.println("Generated snapped to grid pins, bounding box");
     } else {
-      output = output + temp.toString(-xTranslate, -yTranslate, format);
+      temp.writePins(output, -xTranslate, -yTranslate, context);
     }
 
     // have default footprint of unknown for gschem, since kicad does
     // necessarily specify a footprint
     if (format.equals("gschem")) {
-      output = output
-          + SymbolText.attributeString(-xTranslate, -yTranslate, ("footprint=" + suggestedFootprint));
+      output.append(SymbolText.attributeString(context, -xTranslate, -yTranslate, ("footprint=" + suggestedFootprint)));
       // finally, we put in a comment field to show aliases/equivalent devices
       if (deviceAliases != null) {
-        output = output + SymbolText.attributeString(-xTranslate, -yTranslate, deviceAliases);
+        output.append(SymbolText.attributeString(context, -xTranslate, -yTranslate, deviceAliases));
       }
     }
-    return output;
   }
 
   public String getKicadSymbolName()
@@ -79,12 +79,6 @@ public class SymbolArc extends SymbolElement
       fillType = 1;
     } // could support more fill types here, but, meh...
 
-    // we now update superclass min, max dimensions
-    super.updateXdimensions(xCoord - radius);
-    super.updateYdimensions(yCoord - radius);
-    super.updateXdimensions(xCoord + radius);
-    super.updateYdimensions(yCoord + radius);
-
   }
 
   public long localMinXCoord() {
@@ -72,12 +72,6 @@ public class SymbolCircle extends SymbolElement
       fillType = 1;
     } // could support more fill types here, but, meh...
 
-    // we now update superclass min, max dimensions
-    super.updateXdimensions(xCoord - radius);
-    super.updateYdimensions(yCoord - radius);
-    super.updateXdimensions(xCoord + radius);
-    super.updateYdimensions(yCoord + radius);
-
   }
 
 
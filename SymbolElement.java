@@ -22,6 +22,8 @@
 //    translate2coralEDA, translate2geda Copyright (C) 2015, 2019
 //    Erich S. Heinzle a1039181@gmail.com
 
+import java.io.IOException;
+
 /**
  *
  * This class is an archetype for kicad symbol elements
@@ -33,44 +35,17 @@ public class SymbolElement
 
   String elementDescriptor = "";  
   String output = "default-archetype-toString-result";
-  static long maxX = 0;
-  static long minX = 0;
-  static long maxY = 0;
-  static long minY = 0;
   
   public void SymbolPolyline()
   {
     output = "#Hmm, the no arg symbol polygon constructor didn't do much";
   }
 
-  public void resetXYExtents() {
-    maxX = 0;
-    minX = 0;
-    maxY = 0;
-    minY = 0;
-  }
-  
   public void constructor(String arg)
   {
     elementDescriptor = arg; 
   } 
 
-  public long minXCoord() {
-    return minX;
-  }
-
-  public long minYCoord() {
-    return minY;
-  }
-
-  public long maxXCoord() {
-    return maxX;
-  }
-
-  public long maxYCoord() {
-    return maxY;
-  }
-
   public long localMinXCoord() {
     return 0;
   }
@@ -87,22 +62,8 @@ public class SymbolElement
     return output;
   }
 
-  // we use the following methods to keep track of the maximum
-  // extents of the Symbol in the XY plane, so that we can
-  // add text labels tidily. The superclass keeps track
-  // of the min, max (x,y) dimensions with static variables 
-  public void updateXdimensions(long instanceX) {
-    if (instanceX < minX) {
-      minX = instanceX;
-    } else if (instanceX > maxX) {
-      maxX = instanceX;
-    }
-  }
-  public void updateYdimensions(long instanceY) {
-    if (instanceY < minY) {
-      minY = instanceY;
-    } else if (instanceY > maxY) {
-      maxY = instanceY;
-    }
+  // appends the element to a symbol being written out
+  public void writeElement(Appendable out, long xOffset, long yOffset, String format) throws IOException {
+    out.append(toString(xOffset, yOffset, format));
   }
 }
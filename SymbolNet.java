@@ -66,10 +66,6 @@ public class SymbolNet extends SymbolElement
     yCoordOne = y1;
     xCoordTwo = x2;
     yCoordTwo = y2;
-    super.updateXdimensions(xCoordOne);
-    super.updateYdimensions(yCoordOne);
-    super.updateXdimensions(xCoordTwo);
-    super.updateYdimensions(yCoordTwo);
     netColor = color;
   }
 
@@ -91,10 +87,6 @@ public class SymbolNet extends SymbolElement
     yCoordOne = QUCSScale(-Integer.parseInt(tokens[1]));
     xCoordTwo = QUCSScale(Integer.parseInt(tokens[2]));
     yCoordTwo = QUCSScale(-Integer.parseInt(tokens[3]));
-    super.updateXdimensions(xCoordOne);
-    super.updateYdimensions(yCoordOne);
-    super.updateXdimensions(xCoordTwo);
-    super.updateYdimensions(yCoordTwo);
   }
 
 
@@ -109,10 +101,6 @@ public class SymbolNet extends SymbolElement
     yCoordOne = LTSpiceScale(-Integer.parseInt(tokens[2]));
     xCoordTwo = LTSpiceScale(Integer.parseInt(tokens[3]));
     yCoordTwo = LTSpiceScale(-Integer.parseInt(tokens[4]));
-    super.updateXdimensions(xCoordOne);
-    super.updateYdimensions(yCoordOne);
-    super.updateXdimensions(xCoordTwo);
-    super.updateYdimensions(yCoordTwo);
   }
 
   public long localMinXCoord() {
@@ -46,20 +46,6 @@ import java.lang.Exception;
 
 public class SymbolPin extends SymbolElement
 {
-  // the following static variable keeps track
-  // of how many pin descriptions have been generated
-  // in multislot devices when the symbols is exported
-  // in gschem format
-  // hmm, need to re-initialise it after a symbol has been
-  // generated if batches of symbols being done...
-  static int pinSeqTally = 0;
-
-  static int BSDLYCoordL = 0; // for use in BSDL file conversion
-  static int BSDLYCoordR = 0; // for use in BSDL file conversion
-
-  static int symdefXCoord = 0; // for use in symdef file conversion
-  static int symdefYCoord = 0; // for use in symdef file conversion
-
   String pinDescriptor = "";
   String output = "";
   
@@ -105,10 +91,6 @@ public class SymbolPin extends SymbolElement
   int pinSeqVis = 0;
   int pinSeqShow = 1;
 
-  public static void resetPinSeqTally() {
-    pinSeqTally = 0;
-  }
-
   public SymbolPin()
   {
     output = "#Hmm, the no arg symbol pin constructor didn't do much";
@@ -151,26 +133,24 @@ public class SymbolPin extends SymbolElement
   // this is used to create a pin based on the pin number, name
   // descriptors found in an IBIS file. Much like BSDL or
   // csv pain mapping data. 
-  public void populateIBISElement(String IBISLine, String format) {
+  public void populateIBISElement(String IBISLine, ConversionContext context) {
     String [] tokens = prepareForSplit(IBISLine).split(" ");
     Integer pinSpacing = 20; // xschem
-    if (format.equals("gschem")) {
+    if (context.symFormat.equals("gschem")) {
       pinLength = 300; // a reasonable default value
-      BSDLYCoordL += 200; //  a reasonable pin spacing
+      context.BSDLYCoordL += 200; //  a reasonable pin spacing
     } else {
       pinLength = 30;
-      BSDLYCoordL += 20;
+      context.BSDLYCoordL += 20;
     }
 
     xCoord1 = 0;
-    yCoord1 = BSDLYCoordL; // we can use the same Y offset variable
+    yCoord1 = context.BSDLYCoordL; // we can use the same Y offset variable
     pinNumber = tokens[0]; // we used for the BSDL constructor
     pinName = tokens[1];
     //    System.out.println(pinNumber);
     pinDirection = "R"; // default single line of pins, active -> LHS.
 
-    super.updateXdimensions(xCoord1);
-    super.updateYdimensions(yCoord1);
     organiseLabelAndPinCoords();
 
     kicadUnit = 0; // assume only one slot
@@ -179,10 +159,10 @@ public class SymbolPin extends SymbolElement
 
   }
 
-  public void populateSymDefElement(String symDefLine, String dir, String format) {
+  public void populateSymDefElement(String symDefLine, String dir, ConversionContext context) {
     String [] tokens = symDefLine.split(" ");
     Integer pinSpacing = 20; // xschem
-    if (format.equals("gschem")) {
+    if (context.symFormat.equals("gschem")) {
       pinLength = 300; // a reasonable default value
       pinSpacing = 200;
     } else {
@@ -190,16 +170,16 @@ public class SymbolPin extends SymbolElement
       pinSpacing = 20;
     }
     if (dir.equals("L")) {
-      symdefYCoord += pinSpacing; //  a reasonable pin spacing
+      context.symdefYCoord += pinSpacing; //  a reasonable pin spacing
     } else if (dir.equals("D")) {
-      symdefXCoord += pinSpacing; //  a reasonable pin spacing
+      context.symdefXCoord += pinSpacing; //  a reasonable pin spacing
     } else if (dir.equals("R")) {
-      symdefYCoord -= pinSpacing; //  a reasonable pin spacing
+      context.symdefYCoord -= pinSpacing; //  a reasonable pin spacing
     } else if (dir.equals("U")) {
-      symdefXCoord -= pinSpacing; //  a reasonable pin spacing
+      context.symdefXCoord -= pinSpacing; //  a reasonable pin spacing
     }
-    xCoord1 = symdefXCoord;
-    yCoord1 = symdefYCoord;
+    xCoord1 = context.symdefXCoord;
+    yCoord1 = context.symdefYCoord;
     pinNumber = tokens[0];
     if (tokens.length == 3) {
       pinName = tokens[2];
@@ -208,8 +188,6 @@ public class SymbolPin extends SymbolElement
     }
     pinDirection = dir; // default single line of pins, active -> LHS.
 
-    super.updateXdimensions(xCoord1);
-    super.updateYdimensions(yCoord1);
     organiseLabelAndPinCoords();
 
     kicadUnit = 0; // assume only one slot
@@ -218,25 +196,23 @@ public class SymbolPin extends SymbolElement
   }
 
 
-  public void populateBSDLElement(String BSDLLine, String format) {
+  public void populateBSDLElement(String BSDLLine, ConversionContext context) {
     //System.out.println("BSDLLine passed to new pin: " + BSDLLine);
     String [] tokens = prepareForSplit(BSDLLine).split(" ");
-    if (format.equals("gschem")) {
+    if (context.symFormat.equals("gschem")) {
       pinLength = 300; // a reasonable default value
-      BSDLYCoordL += 200; //  a reasonable pin spacing
+      context.BSDLYCoordL += 200; //  a reasonable pin spacing
     } else {
       pinLength = 30;
-      BSDLYCoordL += 20;
+      context.BSDLYCoordL += 20;
     }
     xCoord1 = 0;
-    yCoord1 = BSDLYCoordL;
+    yCoord1 = context.BSDLYCoordL;
     pinNumber = tokens[1];
     pinName = tokens[0];
 
     pinDirection = "R"; // default single line of pins, active -> LHS.
 
-    super.updateXdimensions(xCoord1);
-    super.updateYdimensions(yCoord1);
     organiseLabelAndPinCoords();
 
     kicadUnit = 0; // assume only one slot
@@ -244,11 +220,6 @@ public class SymbolPin extends SymbolElement
 
   }
 
-  public void resetBSDLYCoords() {
-    BSDLYCoordL = 0;
-    BSDLYCoordR = 0;
-  }
-
   public void propagateSpacing(SymbolPin previous, int amount) {
     if (previous.pinDirection.equals("R")) {
       setNewActiveOrigin(previous.xCoord1,
@@ -348,8 +319,6 @@ public class SymbolPin extends SymbolElement
       xCoord1 = xCoord2;
     } 
 
-    super.updateXdimensions(xCoord1);
-    super.updateYdimensions(yCoord1);
     organiseLabelAndPinCoords();
 
     kicadUnit = 0; // assume only one slot
@@ -394,8 +363,6 @@ public class SymbolPin extends SymbolElement
       yCoord1 -= pinLength;
     } 
 
-    super.updateXdimensions(xCoord1);
-    super.updateYdimensions(yCoord1);
     organiseLabelAndPinCoords();
 
     kicadUnit = 0; // assume only one slot
@@ -419,8 +386,6 @@ public class SymbolPin extends SymbolElement
 
     pinDirection = "L";
 
-    super.updateXdimensions(xCoord1);
-    super.updateYdimensions(yCoord1);
     organiseLabelAndPinCoords();
 
     kicadUnit = 0; // assume only one slot
@@ -439,8 +404,6 @@ public class SymbolPin extends SymbolElement
     pinDesc = tokens[2];
     xCoord1 = Integer.parseInt(tokens[3]);
     yCoord1 = Integer.parseInt(tokens[4]);
-    super.updateXdimensions(xCoord1);
-    super.updateYdimensions(yCoord1);
     pinLength = Integer.parseInt(tokens[5]);
     pinDirection = tokens[6].toUpperCase();
 
@@ -626,6 +589,12 @@ public class SymbolPin extends SymbolElement
   }
 
   public String toString(long xOffset, long yOffset, String format) {
+    return toString(xOffset, yOffset, format, 1);
+  }
+
+  // pinSeq is the position of the pin in the rendered symbol, which
+  // is needed for the gschem pinseq attribute
+  public String toString(long xOffset, long yOffset, String format, int pinSeq) {
     if (format.equals("gschem")) {
       return ("P "
               + (xCoord1 + xOffset) + " "
@@ -640,7 +609,7 @@ public class SymbolPin extends SymbolElement
               + "\n"
               + attributeFieldPinLabel(pinName, pinNameX + xOffset, pinNameY + yOffset, pinNameOrientation, pinNameAlignment)
               + "\n"
-              + attributeFieldPinSeq(pinDesc, pinNumberX + xOffset, pinNumberY + yOffset, pinNumberOrientation, pinNumberAlignment)
+              + attributeFieldPinSeq(pinSeq, pinNumberX + xOffset, pinNumberY + yOffset, pinNumberOrientation, pinNumberAlignment)
               + "\n"
               + attributeFieldPinType(pinEType, pinNumberX + xOffset, pinNumberY + yOffset, pinNumberOrientation, pinNumberAlignment)
               + "\n}");
@@ -692,10 +661,6 @@ public class SymbolPin extends SymbolElement
         xCoord2 = xCoord1;
       } 
 
-      super.updateXdimensions(xCoord1);
-      super.updateYdimensions(yCoord1);
-      super.updateXdimensions(xCoord2);
-      super.updateYdimensions(yCoord2);
       organiseLabelAndPinCoords();
     }
   }
@@ -710,12 +675,9 @@ public class SymbolPin extends SymbolElement
     return SymbolText.toString(X, Y, pinNumberColour, pinNumberSize, pinNumberVis, pinNumberShow, orientation, alignment, numLines, ("pinnumber=" + pinDesc));
   }
 
-  private String attributeFieldPinSeq(String pinDesc, long X, long Y, int orientation, int alignment)  {
+  private String attributeFieldPinSeq(int pinSeq, long X, long Y, int orientation, int alignment)  {
     int numLines = 1;
-    // we use the class static variable pinSeqTally to keep track
-    // of how many rendered pins have been generated
-    pinSeqTally++;
-    return SymbolText.toString(X, Y, pinSeqColour, pinSeqTextSize, pinSeqVis, pinSeqShow, orientation, alignment, numLines, ("pinseq=" + pinSeqTally));
+    return SymbolText.toString(X, Y, pinSeqColour, pinSeqTextSize, pinSeqVis, pinSeqShow, orientation, alignment, numLines, ("pinseq=" + pinSeq));
   }
 
   private String attributeFieldPinType(String pinDesc, long X, long Y, int orientation, int alignment)  {
@@ -769,10 +731,5 @@ public class SymbolPin extends SymbolElement
       pinNumberOrientation = pinNameOrientation = 90; // degrees from +ve x-axis
       pinNameAlignment = 7;
     } 
-    // we keep track of the overall size of the drawn elements
-    super.updateXdimensions(xCoord1);
-    super.updateYdimensions(yCoord1);
-    super.updateXdimensions(xCoord2);
-    super.updateYdimensions(yCoord2);
   }
 }
@@ -96,9 +96,6 @@ public class SymbolPolyline extends SymbolElement
   }
 
   public void updateCoords(int vertex) {
-    // we first update the superclass static variable
-    super.updateXdimensions(xCoords[vertex]);
-    super.updateYdimensions(yCoords[vertex]);
     // we sort out the local max,min variables
     if (minX > xCoords[vertex]) {
       minX = xCoords[vertex];
@@ -67,10 +67,6 @@ public class SymbolRectangle extends SymbolElement
     yCoordOne = y1;
     xCoordTwo = x2;
     yCoordTwo = y2;
-    super.updateXdimensions(xCoordOne);
-    super.updateYdimensions(yCoordOne);
-    super.updateXdimensions(xCoordTwo);
-    super.updateYdimensions(yCoordTwo);
     lineThickness = thick;
     fillType = fill; // 0 is no fill, 1 is solid IIRC
   }
@@ -86,10 +82,6 @@ public class SymbolRectangle extends SymbolElement
     yCoordOne = Integer.parseInt(tokens[2]);
     xCoordTwo = Integer.parseInt(tokens[3]);
     yCoordTwo = Integer.parseInt(tokens[4]);
-    super.updateXdimensions(xCoordOne);
-    super.updateYdimensions(yCoordOne);
-    super.updateXdimensions(xCoordTwo);
-    super.updateYdimensions(yCoordTwo);
     lineThickness = Integer.parseInt(tokens[7]);
     if (tokens[8].startsWith("N")) {
       fillType = 0;
@@ -43,13 +43,6 @@ public class SymbolText extends SymbolElement
   String textDescriptor = "";  
   String output = "";
 
-  // the following three variables are used in an
-  // attempt to keep the annotations tidy and properly 
-  // justified relative to the existing text fields
-  static long maxTextX = 0;
-  static long maxTextY = 0;
-  static int invisibleAttributeCount = 0;
-   
   long xCoord = 0;
   long yCoord = 0;
   long radius = 0;
@@ -65,18 +58,6 @@ public class SymbolText extends SymbolElement
     output = "#Hmm, the no arg symbol circle constructor didn't do much";
   }
 
-  public static void resetSymbolTextAttributeOffsets() {
-    resetSymbolTextAttributeOffsets(0,0);
-  }
-
-
-  public static void resetSymbolTextAttributeOffsets(long newX, long newY) {
-    // we simply want to start all text to the right of the
-    // symbol, and about 100 mil up from the x axis 
-    maxTextX = -newX*2 + 100;
-    maxTextY = newY + 100;
-    invisibleAttributeCount = 0;
-  }
 
   public void populateBXLElement(String BXLLine) {
     // this is a bit convoluted because the attribute
@@ -162,16 +143,6 @@ public class SymbolText extends SymbolElement
     xCoord = Integer.parseInt(tokens[2]);
     yCoord = Integer.parseInt(tokens[3]);
     textSize = Integer.parseInt(tokens[4]);
-
-    // we now update superclass min, max dimensions
-    super.updateXdimensions(xCoord);
-    super.updateYdimensions(yCoord);
-    if (maxTextX < xCoord) {
-      maxTextX = xCoord;
-    }
-    if (maxTextY < yCoord) {
-      maxTextY = yCoord;
-    }
   }
 
   public long localMinXCoord() {
@@ -212,17 +183,17 @@ public class SymbolText extends SymbolElement
             + text);
   }
 
-  public static String symDefAttributeString(long xOffset, long yOffset, String attribute) {
+  public static String symDefAttributeString(ConversionContext context, long xOffset, long yOffset, String attribute) {
     String extract = "";
     if (attribute.startsWith("! ")) {
       extract = attribute.substring(2);
     } else {
       extract = attribute;
     }
-    return attributeString(xOffset, yOffset, extract);
+    return attributeString(context, xOffset, yOffset, extract);
   }
 
-  public static String BXLAttributeString(long xOffset, long yOffset, String attribute) {
+  public static String BXLAttributeString(ConversionContext context, long xOffset, long yOffset, String attribute) {
     String extract = "";
     if (attribute.startsWith("refdes=") ||
         attribute.startsWith("footprint=") ||
@@ -242,33 +213,35 @@ public class SymbolText extends SymbolElement
       extract = extract + "=" + attribute.substring(indexOne + 3); 
       extract = extract.replaceAll("\"", "");
     }
-    return attributeString(xOffset, yOffset, extract);
+    return attributeString(context, xOffset, yOffset, extract);
   }
 
   // should get away with the same static code as LTSpice.
-  public static String QUCSRefDesString(long xOffset,
+  public static String QUCSRefDesString(ConversionContext context,
+                                        long xOffset,
                                         long yOffset,
                                         String attribute) {
-    return LTSpiceRefdesString(xOffset, yOffset, attribute);
+    return LTSpiceRefdesString(context, xOffset, yOffset, attribute);
   }
 
-  public static String QUCSValueString(long xOffset,
+  public static String QUCSValueString(ConversionContext context,
+                                       long xOffset,
                                        long yOffset,
                                        String attribute) {
     // we subtract 340 to place the value below the refdes
     // provided by the QUCS  refdes function
-    return LTSpiceRefdesString(xOffset, yOffset -340, attribute);
+    return LTSpiceRefdesString(context, xOffset, yOffset -340, attribute);
   }
 
-  public static String LTSpiceRefdesString(long xOffset, long yOffset, String attribute) {
+  public static String LTSpiceRefdesString(ConversionContext context, long xOffset, long yOffset, String attribute) {
     long annotationTextYIncrement = 170;
-    maxTextY += annotationTextYIncrement;
+    context.maxTextY += annotationTextYIncrement;
     // we add a bit of space above the previous visible text fields
     // before adding the invisible attribute fields to the symbol
-    if (invisibleAttributeCount == 0) {
-      maxTextY += annotationTextYIncrement;
+    if (context.invisibleAttributeCount == 0) {
+      context.maxTextY += annotationTextYIncrement;
     }
-    invisibleAttributeCount++;
+    context.invisibleAttributeCount++;
     if (!attribute.startsWith("refdes=")
         && !attribute.startsWith("value=")) {
       attribute = "refdes=" + attribute;
@@ -281,8 +254,8 @@ public class SymbolText extends SymbolElement
     int textAlignment = 0;
     int numLines = 1;
     return ("\nT "
-            + (maxTextX + xOffset) + " " 
-            + (maxTextY + yOffset) + " " 
+            + (context.maxTextX + xOffset) + " " 
+            + (context.maxTextY + yOffset) + " " 
             + colorIndex + " "
             + textSize + " "
             + fieldVis + " " // visibility on = 1
@@ -293,15 +266,15 @@ public class SymbolText extends SymbolElement
             + attribute );
   }
 
-  public static String attributeString(long xOffset, long yOffset, String attribute) {
+  public static String attributeString(ConversionContext context, long xOffset, long yOffset, String attribute) {
     long annotationTextYIncrement = 110;
-    maxTextY += annotationTextYIncrement;
+    context.maxTextY += annotationTextYIncrement;
     // we add a bit of space above the previous visible text fields
     // before adding the invisible attribute fields to the symbol
-    if (invisibleAttributeCount == 0) {
-      maxTextY += annotationTextYIncrement;
+    if (context.invisibleAttributeCount == 0) {
+      context.maxTextY += annotationTextYIncrement;
     }
-    invisibleAttributeCount++;
+    context.invisibleAttributeCount++;
     int colorIndex = 3;
     int textSize = 7;
     int fieldVis = 0;
@@ -310,8 +283,8 @@ public class SymbolText extends SymbolElement
     int textAlignment = 0;
     int numLines = 1;
     return ("\nT "
-            + (maxTextX + xOffset) + " " 
-            + (maxTextY + yOffset) + " " 
+            + (context.maxTextX + xOffset) + " " 
+            + (context.maxTextY + yOffset) + " " 
             + colorIndex + " "
             + textSize + " "
             + fieldVis + " " // visibility on = 1
@@ -36,17 +36,18 @@ import java.util.Scanner;
 
 class hkpParser extends CADParser {
 
-  private static boolean verbose = false;
+  private boolean verbose = false;
 
   static float magnificationRatio = 1.0f;
   static String exportPath = "Converted/";
   
-  public hkpParser(String filename, boolean verbose) {
+  public hkpParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File hkpFile = new File(filename);
     if (!hkpFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting formats: !" + fpFormat + ", " + symFormat);
+      System.out.println("Parsing: " + filename + " and exporting formats: !" + context.fpFormat + ", " + context.symFormat);
     }
     this.verbose = verbose;
   }
@@ -55,7 +56,7 @@ class hkpParser extends CADParser {
   // generation as well as package/footprint information
   // For now, we only convert symbols, since pcb-rnd takes
   // care of footprint import 
-  public static String [] convert(String hkpFile) throws IOException {
+  public String [] convert(String hkpFile) throws IOException {
 
     File HKP = new File(hkpFile);
     Scanner textHKP = new Scanner(HKP);
@@ -117,11 +118,11 @@ class hkpParser extends CADParser {
             SymbolPolyline symbolLine = new SymbolPolyline();
             symbolLine.populateHKPElement(feature);
             newElement = newElement
-                + "\n" + symbolLine.toString(0,-yOffset,symFormat);
+                + "\n" + symbolLine.toString(0,-yOffset,context.symFormat);
           } 
         }
 
-        newSymbol = symbolHeader(symFormat)
+        newSymbol = symbolHeader(context.symFormat)
             + newElement; // we have created the header for the symbol
         newElement = "";
         silkFeatures.clear();
@@ -130,11 +131,11 @@ class hkpParser extends CADParser {
         // we can now put the pieces of the HKP defined symbol together
         elName = symbolName + ".sym";
         elData = newSymbol   // we now add pins to the
-            + pins.toString(0,-yOffset, symFormat) // the header, and then
+            + pins.toString(0,-yOffset, context) // the header, and then
             + symAttributes; // the final attributes
 
         // we now write the element to a file
-        elementWrite(elName, elData);
+        elementWrite(context.outputDir + elName, elData);
         // add the symbol to our list of converted elements
         convertedFiles.add(elName);
         // and we rest the variable for the next symbol
@@ -145,7 +146,7 @@ class hkpParser extends CADParser {
 //  May get used uf we decided to try and convert footprints in hkp files
 //  but pcb-rnd does a better job 
 //    List<String> footprintsExported
-//        = Arrays.asList(Footprint.exportFootprints(hkpFile, footprints, fpFormat,
+//        = Arrays.asList(Footprint.exportFootprints(hkpFile, footprints, context,
 //                                                   magnificationRatio, exportPath,
 //                                                   true, verbose));
 //    convertedFiles.addAll(footprintsExported);    
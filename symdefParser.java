@@ -32,18 +32,19 @@ import java.util.Scanner;
 
 class symdefParser extends CADParser {
 
-  public symdefParser(String filename, boolean verbose) {
+  public symdefParser(String filename, boolean verbose, ConversionContext context) {
+    this.context = context;
     File symDefFile = new File(filename);
     if (!symDefFile.exists()) {
       System.exit(0);
     } else {
-      System.out.println("Parsing: " + filename + " and exporting format: " + symFormat);
+      System.out.println("Parsing: " + filename + " and exporting format: " + context.symFormat);
     }
   }
 
   // .symdef files provide pin mapping suitable for symbol generation
   // but do not provide package/footprint information
-  public static String [] convert(String symDefFilename) throws IOException {
+  public String [] convert(String symDefFilename) throws IOException {
 
     File symDefFile = new File(symDefFilename);
     Scanner symDef = new Scanner(symDefFile);
@@ -110,33 +111,33 @@ class symdefParser extends CADParser {
     PinList pins = new PinList(0); // slots = 0
     for (String line : left) {
       SymbolPin newPin = new SymbolPin();
-      newPin.populateSymDefElement(line, "R", symFormat);
+      newPin.populateSymDefElement(line, "R", context);
       pins.addPin(newPin);
     }
     for (String line : bottom) {
       SymbolPin newPin = new SymbolPin();
-      newPin.populateSymDefElement(line, "U", symFormat);
+      newPin.populateSymDefElement(line, "U", context);
       pins.addPin(newPin);
     }
     for (String line : top) {
       SymbolPin newPin = new SymbolPin();
-      newPin.populateSymDefElement(line, "D", symFormat);
+      newPin.populateSymDefElement(line, "D", context);
       pins.addPin(newPin);
     }
     for (String line : right) {
       SymbolPin newPin = new SymbolPin();
-      newPin.populateSymDefElement(line, "L", symFormat);
+      newPin.populateSymDefElement(line, "L", context);
       pins.addPin(newPin);
     }
 
     // our pinsGridAligned method will make the pins nicely spaced
     // around the symbol. 
-    PinList newPinList = pins.pinsGridAligned(pinSpacing);
+    PinList newPinList = pins.pinsGridAligned(context.pinSpacing);
 
     // now we have a list of pins, we can calculate the offsets
     // to justify the element in gschem, and justify the attribute
     // fields.
-    yOffset = newPinList.minY()-pinSpacing;  // includes bounding box
+    yOffset = newPinList.minY()-context.pinSpacing;  // includes bounding box
     // spacing of ~ 200 takes care of the bounding box
 
     textXOffset = newPinList.textRHS();
@@ -144,10 +145,10 @@ class symdefParser extends CADParser {
 
     for (String attr : textLabels) {
       symAttributes = symAttributes
-          + SymbolText.symDefAttributeString(textXOffset, 0, attr);
+          + SymbolText.symDefAttributeString(context, textXOffset, 0, attr);
     }
 
-    newSymbol = symbolHeader(symFormat); // don;t need newElement
+    newSymbol = symbolHeader(context.symFormat); // don;t need newElement
     //        + newElement; // we have created the header for the symbol
     //newElement = ""; //not used
     
@@ -156,16 +157,16 @@ class symdefParser extends CADParser {
     // we can now put the pieces of the symdef defined symbol together
     elName = "symDefSymbol.sym";
     elData = newSymbol   // we now add pins to the
-        + newPinList.toString(xOffset,-yOffset, symFormat) // the header, and then
+        + newPinList.toString(xOffset,-yOffset, context) // the header, and then
         + "\n"
-	+ newPinList.boundingBox(0,0).toString(xOffset,-yOffset, symFormat);
+	+ newPinList.boundingBox(0,0).toString(xOffset,-yOffset, context.symFormat);
 
-    if (symFormat.equals("gschem")) {
+    if (context.symFormat.equals("gschem")) {
       elData = elData + symAttributes; // the final attributes
     }
 
     // we now write the element to a file
-    elementWrite(elName, elData);
+    elementWrite(context.outputDir + elName, elData);
     // add the symbol to our list of converted elements
     convertedFiles.add(elName);
     return convertedFiles.toArray(new String[convertedFiles.size()]);
@@ -27,30 +27,48 @@
 
 
 import java.io.*;
-import java.util.Scanner;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class translate2coralEDA {
 
   static boolean verbose = false;
 
+  // the export formats chosen on the command line, which are
+  // copied into a new ConversionContext for each file converted
+  static ConversionContext settings = new ConversionContext();
+
   public static void main (String [] args) {
 
     boolean textOutputOnly = false;
     boolean quietMode = false;
+    boolean batchMode = false;
+    boolean gerberJob = false;
+    int threads = Runtime.getRuntime().availableProcessors();
     String defaultFormat = "coral";
     String filename = "";
     String [] convertedFiles = null;
+    List<String> inputs = new ArrayList<String>();
 
-    CADParser.setFormat(defaultFormat);
+    settings.setFormat(defaultFormat);
 
     if (args.length == 0) {
       printHelp();
       System.exit(0);
     } else {
       filename = args[0];
-      for (String arg : args) {
+      for (int index = 0; index < args.length; index++) {
+        String arg = args[index];
         if (arg.equals("-t")) {
           textOutputOnly = true;
         } else if (arg.equals("-q")){
@@ -58,9 +76,41 @@ public class translate2coralEDA {
         } else if (arg.equals("-v")){
           verbose = true;
         } else if (arg.equals("-g")){
-          CADParser.setFormat("gEDA");
+          settings.setFormat("gEDA");
+        } else if (arg.equals("-n")){
+          SourceBuffer.setUseNodeTree(true);
+        } else if (arg.equals("-b")){
+          batchMode = true;
+        } else if (arg.equals("-l")){
+          gerberJob = true;
+        } else if (arg.equals("-p")){
+          settings.previews = true;
+        } else if (arg.equals("-j") && (index + 1) < args.length){
+          threads = Math.max(1, Integer.parseInt(args[++index]));
+        } else if (!arg.startsWith("-")) {
+          inputs.add(arg);
+        }
+      }
+    }
+
+    if (batchMode) {
+      batchConvert(inputs, threads, quietMode);
+      System.exit(0);
+    }
+
+    if (gerberJob) {
+      try {
+        convertedFiles = GerberJob.convert(inputs, threads,
+                                           new ConversionContext(settings));
+      } catch (Exception e) {
+        defaultFileIOError(e);
+      }
+      if (convertedFiles != null && !quietMode) {
+        for (String converted : convertedFiles) {
+          System.out.println(converted);
         }
       }
+      System.exit(0);
     }
 
     if (!quietMode) {
@@ -70,143 +120,292 @@ public class translate2coralEDA {
     // we'll now try and decide what to do with the supplied file
     // based on the file ending
 
-    if (filename.endsWith(".bsd") ||
-        filename.endsWith(".BSD")) {
+    String converter = converterFor(filename);
+    if (converter == null) {
+      System.out.println("I didn't recognise a suitable file " +
+                         "ending for conversion, i.e..\n" +
+                         "\t.bxl, .bsd, .ibs, .symdef, .asc, .sch, " +
+                         ".gbr, hersheydata.py, .mod, .kicad_mod etc...");
+    } else if (converter.equals("BXL") && textOutputOnly) {
       try {
-        convertedFiles = parseBSDL(filename);
+        textOnlyBXL(filename);
       } catch (Exception e) {
         defaultFileIOError(e);
       }
-    } else if ((filename.endsWith(".bxl") ||
-                filename.endsWith(".BXL")) && 
-               textOutputOnly)  {
-      textOnlyBXL(filename);
       System.exit(0);
-    } else if (filename.endsWith(".bxl") ||
-               filename.endsWith(".BXL"))  {
-      try {
-        convertedFiles = parseBXL(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
-      }
-    } else if (filename.endsWith(".hkp") ||
-               filename.endsWith(".HKP"))  {
-      try {
-        convertedFiles = parseHKP(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
-      }
-    } else if (filename.endsWith(".ibs") ||
-               filename.endsWith(".IBS") ) {
-      try {
-        convertedFiles = parseIBIS(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
-      }
-    } else if (filename.endsWith(".symdef") ||
-               filename.endsWith(".SYMDEF") ) {
+    } else {
       try {
-        convertedFiles = parseSymdef(filename);
+        convertedFiles = convert(converter, filename);
       } catch (Exception e) {
         defaultFileIOError(e);
       }
-    } else if (filename.endsWith(".lbr") ||
-               filename.endsWith(".LBR") ||
-               filename.endsWith(".brd") || // will catch XML eagle, but fall over on kicad
-               filename.endsWith(".BRD") ) {
-      try {
-        convertedFiles = parseEagleLBR(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
+    }
+
+    if (convertedFiles != null &&
+        !quietMode) {
+      for (String converted : convertedFiles) {
+        System.out.println(converted);
       }
-    } else if (filename.endsWith(".lib") ||
-               filename.endsWith(".LIB") ) {
-      try {
-        convertedFiles = parseKicadLib(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
+    }
+
+  }
+
+  // file endings, compared in lower case, and the converter used for
+  // each of them
+  // NB: .brd will catch XML eagle, but fall over on kicad
+  // NB: gschem also saves as .sch
+  // NB: there's a lot of variety in gerber file endings here
+  // i.e. .pho, .gm1, .gbo .gbs .gto .gts etc...
+  private static final String [][] converters = {
+    {".bsd", "BSDL"},
+    {".bxl", "BXL"},
+    {".hkp", "HKP"},
+    {".ibs", "IBIS"},
+    {".symdef", "symdef"},
+    {".lbr", "Eagle"},
+    {".brd", "Eagle"},
+    {".lib", "KicadLib"},
+    {".mod", "KicadModule"},
+    {".kicad_mod", "KicadModule"},
+    {".asc", "LTSpice"},
+    {".sch", "QUCS"},
+    {".gbr", "Gerber"},
+    {".gbl", "Gerber"},
+    {".gtl", "Gerber"},
+    {".gto", "Gerber"},
+    {".gbo", "Gerber"},
+    {".gbs", "Gerber"},
+    {".gts", "Gerber"},
+    {".pho", "Gerber"},
+    {".py", "Hershey"}, // might be an eggbot font def file
+    {".chr", "BGIfont"} // might be a BGI font def file
+  };
+
+  // returns the name of the converter for the file, or null if the
+  // file ending is not one we know how to convert
+  public static String converterFor(String filename) {
+    String lowerCase = filename.toLowerCase();
+    for (String [] converter : converters) {
+      if (lowerCase.endsWith(converter[0])) {
+        return converter[1];
       }
-    } else if (filename.endsWith(".mod") ||
-               filename.endsWith(".MOD") ||
-               filename.endsWith(".KICAD_MOD") ||
-               filename.endsWith(".kicad_mod") ) {
-      try {
-        convertedFiles = parseKicadModule(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
+    }
+    return null;
+  }
+
+  public static String [] convert(String converter, String filename)
+    throws IOException {
+    return convert(converter, filename, "");
+  }
+
+  // the output directory is put in front of the names of the files
+  // written, i.e. "" for the current directory
+  public static String [] convert(String converter, String filename,
+                                  String outputDir) throws IOException {
+    ConversionContext context = new ConversionContext(settings);
+    context.outputDir = outputDir;
+    if (converter.equals("BSDL")) {
+      return parseBSDL(filename, context);
+    } else if (converter.equals("BXL")) {
+      return parseBXL(filename, context);
+    } else if (converter.equals("HKP")) {
+      return parseHKP(filename, context);
+    } else if (converter.equals("IBIS")) {
+      return parseIBIS(filename, context);
+    } else if (converter.equals("symdef")) {
+      return parseSymdef(filename, context);
+    } else if (converter.equals("Eagle")) {
+      return parseEagleLBR(filename, context);
+    } else if (converter.equals("KicadLib")) {
+      return parseKicadLib(filename, context);
+    } else if (converter.equals("KicadModule")) {
+      return parseKicadModule(filename, context);
+    } else if (converter.equals("LTSpice")) {
+      return parseLTSpice(filename, context);
+    } else if (converter.equals("QUCS")) {
+      return parseQUCS(filename, context);
+    } else if (converter.equals("Gerber")) {
+      return parseGerber(filename, context);
+    } else if (converter.equals("Hershey")) {
+      return parseHersheyData(filename, context);
+    } else if (converter.equals("BGIfont")) {
+      return parseBGIfont(filename, context);
+    }
+    return null;
+  }
+
+  // batch mode converts every convertible file found in the supplied
+  // directories, which are searched recursively, or matching the
+  // supplied glob patterns, i.e. "libs/**.bxl", on a pool of threads
+  private static void batchConvert(List<String> inputs, int threads,
+                                   boolean quietMode) {
+
+    long startTime = System.nanoTime();
+    List<String> filenames = new ArrayList<String>();
+    for (String input : inputs) {
+      findConvertible(input, filenames);
+    }
+    if (!quietMode) {
+      System.out.println("Batch converting " + filenames.size()
+                         + " files using " + threads + " threads");
+    }
+
+    // each file is converted into a directory of its own, named after
+    // its path, since libraries in different places often share
+    // footprint and symbol names, and their conversions run at the
+    // same time
+    List<String> outputDirs = new ArrayList<String>();
+    HashMap<String,String> outputDirFiles = new HashMap<String,String>();
+    for (String filename : filenames) {
+      String outputDir = filename.replaceAll("[^a-zA-Z0-9-]", "_") + File.separator;
+      outputDirs.add(outputDir);
+      String clash = outputDirFiles.put(outputDir, filename);
+      if (clash != null) {
+        System.out.println("Batch conversion stopped, as " + clash + " and "
+                           + filename + " would both be converted into "
+                           + outputDir);
+        System.exit(1);
       }
-    } else if (filename.endsWith(".asc") ||
-               filename.endsWith(".ASC") ) {
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<String []>> results = new ArrayList<Future<String []>>();
+    for (int index = 0; index < filenames.size(); index++) {
+      final String filename = filenames.get(index);
+      final String outputDir = outputDirs.get(index);
+      // with the footprints in a Converted directory within it
+      new File(outputDir + "Converted").mkdirs();
+      results.add(pool.submit(new Callable<String []>() {
+          public String [] call() throws IOException {
+            return convert(converterFor(filename), filename, outputDir);
+          }
+        }));
+    }
+    pool.shutdown();
+
+    int footprints = 0;
+    int symbols = 0;
+    int others = 0;
+    int abandoned = 0;
+    for (int index = 0; index < filenames.size(); index++) {
+      String [] convertedFiles = null;
       try {
-        convertedFiles = parseLTSpice(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
+        convertedFiles = results.get(index).get();
+      } catch (ExecutionException e) {
+        abandoned++;
+        System.out.println("Error converting " + filenames.get(index)
+                           + ": " + e.getCause());
+      } catch (InterruptedException e) {
+        abandoned++;
+        System.out.println("Interrupted converting " + filenames.get(index));
       }
-    } else if (filename.endsWith(".sch") ||
-               filename.endsWith(".SCH") ) {
-      try { // NB: gschem also saves as .sch
-        convertedFiles = parseQUCS(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
-      }
-    } else if (filename.endsWith(".gbr") ||
-               filename.endsWith(".GBR") ||
-               filename.endsWith(".gbl") ||
-               filename.endsWith(".GBL") ||
-               filename.endsWith(".gtl") ||
-               filename.endsWith(".GTL") ||
-               filename.endsWith(".gto") ||
-               filename.endsWith(".GTO") ||
-               filename.endsWith(".gbo") ||
-               filename.endsWith(".GBO") ||
-               filename.endsWith(".gbs") ||
-               filename.endsWith(".GBS") ||
-               filename.endsWith(".gts") ||
-               filename.endsWith(".GTS") ||
-               filename.endsWith(".PHO") ||
-               filename.endsWith(".pho") ) {
-      try { // NB: there's a lot of variety here
-        // i.e. .pho, .gm1, .gbo .gbs .gto .gts etc...
-        convertedFiles = parseGerber(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
+      if (convertedFiles == null) {
+        continue;
       }
-    } else if (filename.endsWith(".py") ||
-               filename.endsWith(".PY") ) {
-      try { // might be an eggbot font def file
-        convertedFiles = parseHersheyData(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
+      for (String converted : convertedFiles) {
+        if (converted.endsWith(".sym")) {
+          symbols++;
+        } else if (converted.endsWith(".lht") || converted.endsWith(".fp")) {
+          footprints++;
+        } else {
+          others++;
+        }
+        if (!quietMode) {
+          System.out.println(converted);
+        }
       }
-    } else if (filename.endsWith(".chr") ||
-               filename.endsWith(".CHR") ) {
-      try { // might be a BGI font def file
-        convertedFiles = parseBGIfont(filename);
-      } catch (Exception e) {
-        defaultFileIOError(e);
+    }
+
+    long elapsed = (System.nanoTime() - startTime)/1000000;
+    System.out.println("Batch summary: " + filenames.size() + " files, "
+                       + footprints + " footprints, "
+                       + symbols + " symbols, "
+                       + others + " other outputs, in "
+                       + elapsed + " ms");
+    // most parsers report their own errors, i.e. files they couldn't
+    // save, and carry on, so this only counts the abandoned conversions
+    if (abandoned > 0) {
+      System.out.println(abandoned + " conversions stopped by an exception");
+    }
+  }
+
+  // adds the convertible files for a directory, glob or filename
+  private static void findConvertible(String input, List<String> filenames) {
+    int globIndex = firstGlobChar(input);
+    if (globIndex == -1) {
+      File inputFile = new File(input);
+      if (inputFile.isDirectory()) {
+        addConvertible(inputFile, null, filenames);
+      } else if (inputFile.exists() && converterFor(input) != null) {
+        filenames.add(input);
+      } else {
+        System.out.println("Skipping: " + input);
       }
-    } else {
-      System.out.println("I didn't recognise a suitable file " +
-                         "ending for conversion, i.e..\n" +
-                         "\t.bxl, .bsd, .ibs, .symdef, .asc, .sch, " +
-                         ".gbr, hersheydata.py, .mod, .kicad_mod etc...");
+      return;
+    }
+    // we search from the last directory before the first glob character,
+    // and match the paths found the same way they are listed
+    input = withoutCurrentDir(input);
+    int slashIndex = input.lastIndexOf(File.separatorChar, globIndex);
+    File baseDir = new File(slashIndex == -1 ? "." : input.substring(0, slashIndex + 1));
+    PathMatcher matcher
+        = FileSystems.getDefault().getPathMatcher("glob:" + input);
+    if (baseDir.isDirectory()) {
+      addConvertible(baseDir, matcher, filenames);
     }
+  }
 
-    if (convertedFiles != null &&
-        !quietMode) {
-      for (String converted : convertedFiles) {
-        System.out.println(converted);
+  private static void addConvertible(File dir, PathMatcher matcher,
+                                     List<String> filenames) {
+    File [] contents = dir.listFiles();
+    if (contents == null) {
+      return;
+    }
+    Arrays.sort(contents); // keeps the batch order repeatable
+    for (File file : contents) {
+      String path = withoutCurrentDir(file.getPath());
+      if (file.isDirectory()) {
+        addConvertible(file, matcher, filenames);
+      } else if (batchConverterFor(path) != null &&
+                 (matcher == null || matcher.matches(Paths.get(path)))) {
+        filenames.add(path);
       }
     }
+  }
 
+  // only hersheydata.py is taken for a font file when searching, rather
+  // than every python script in the tree
+  private static String batchConverterFor(String path) {
+    String converter = converterFor(path);
+    if ("Hershey".equals(converter)
+        && !new File(path).getName().equalsIgnoreCase("hersheydata.py")) {
+      return null;
+    }
+    return converter;
   }
 
+  // i.e. "./libs/a.lbr" becomes "libs/a.lbr"
+  private static String withoutCurrentDir(String path) {
+    while (path.startsWith("." + File.separator)) {
+      path = path.substring(2);
+    }
+    return path;
+  }
+
+  private static int firstGlobChar(String input) {
+    for (int index = 0; index < input.length(); index++) {
+      if ("*?[{".indexOf(input.charAt(index)) != -1) {
+        return index;
+      }
+    }
+    return -1;
+  }
 
   // BSDL files provide pin mapping suitable for symbol generation
   // but do not provide package/footprint information
-  private static String [] parseBSDL(String BSDLFilename) throws IOException {
+  private static String [] parseBSDL(String BSDLFilename, ConversionContext context) throws IOException {
 
-    BSDLParser BSDLp = new BSDLParser(BSDLFilename, verbose);
+    BSDLParser BSDLp = new BSDLParser(BSDLFilename, verbose, context);
     return BSDLp.convert(BSDLFilename);
 
   } 
@@ -214,7 +413,7 @@ public class translate2coralEDA {
   // BXL files provide both pin mapping suitable for symbol
   // generation as well as package/footprint information
   // here we export the raw BXL text, without further conversion
-  private static void textOnlyBXL(String BXLFile) {
+  private static void textOnlyBXL(String BXLFile) throws IOException {
 
     SourceBuffer buffer = new SourceBuffer(BXLFile); 
     System.out.println(buffer.decode());
@@ -223,18 +422,18 @@ public class translate2coralEDA {
 
   // BXL files provide both pin mapping suitable for symbol
   // generation as well as package/footprint information
-  private static String [] parseBXL(String BXLFilename) throws IOException {
+  private static String [] parseBXL(String BXLFilename, ConversionContext context) throws IOException {
 
-    BXLParser BXLp = new BXLParser(BXLFilename, verbose);
+    BXLParser BXLp = new BXLParser(BXLFilename, verbose, context);
     return BXLp.convert(BXLFilename);
 
   } 
 
   // Eagle libraries provide footprint data, pin mapping, and
   // schematic symbol data
-  private static String [] parseEagleLBR(String EagleFilename) throws IOException {
+  private static String [] parseEagleLBR(String EagleFilename, ConversionContext context) throws IOException {
 
-    EagleParser Eaglep = new EagleParser(EagleFilename, verbose);
+    EagleParser Eaglep = new EagleParser(EagleFilename, verbose, context);
     return Eaglep.convert(EagleFilename);
 
   } 
@@ -248,27 +447,29 @@ public class translate2coralEDA {
   // - polygonal pour is 4 or 8 sided, then it is made into a padstack
   // - heuristics for pin/pad vs wire are tricky though due to
   //   some naughty EDAs painting some features instead of flashing
-  private static String [] parseGerber(String gerberFile)
+  private static String [] parseGerber(String gerberFile, ConversionContext context)
     throws IOException {
 
-    File input = new File(gerberFile);
-    Scanner gerberData = new Scanner(input);
-    String gerbText = "";
-    while (gerberData.hasNextLine()) {
-      gerbText = gerbText + gerberData.nextLine();
+    // the gerber is streamed into the plotter, which joins the lines
+    // together as it tokenizes them
+    BufferedReader gerberData = new BufferedReader(new FileReader(gerberFile));
+    try {
+      Plotter gerberPlotter = new Plotter();
+      gerberPlotter.setScale(1.0, 1.0);
+      gerberPlotter.setSize(800, 640); // might make it behave
+      context.setFPFormat("pcb-rnd"); // gerbers are only exported as subcircuits
+      return gerberPlotter.generatePCBFile(gerberData,gerberFile,context);
+    } finally {
+      gerberData.close();
     }
-    Plotter gerberPlotter = new Plotter();
-    gerberPlotter.setScale(1.0, 1.0);
-    gerberPlotter.setSize(800, 640); // might make it behave
-    return gerberPlotter.generatePCBFile(gerbText,gerberFile,"pcb-rnd");
 
   }
 
   // Hershey files provide stroked font information in NIST format,
   // sometimes found in the wild in .py files
-  private static String [] parseHersheyData(String hersheyFilename) throws IOException {
+  private static String [] parseHersheyData(String hersheyFilename, ConversionContext context) throws IOException {
   
-    HersheyParser Hersheyp = new HersheyParser(hersheyFilename, verbose);
+    HersheyParser Hersheyp = new HersheyParser(hersheyFilename, verbose, context);
     return Hersheyp.convert(hersheyFilename);
 
   }
@@ -276,9 +477,9 @@ public class translate2coralEDA {
   // Borland Turbo Pascal BGI files provide stroked font information in a
   // proprietary binary format to help you party like it's 1989,
   // see https://moddingwiki.shikadi.net/wiki/BGI_Stroked_Font
-  private static String [] parseBGIfont(String BGIfilename) throws IOException {
+  private static String [] parseBGIfont(String BGIfilename, ConversionContext context) throws IOException {
 
-    BGIfontParser BGIp = new BGIfontParser(BGIfilename, verbose);
+    BGIfontParser BGIp = new BGIfontParser(BGIfilename, verbose, context);
     return BGIp.convert(BGIfilename);
 
   }
@@ -286,9 +487,9 @@ public class translate2coralEDA {
   // HKP files provide symbols and footprints in veribest format
   // from Orcad, but we only convert symbols for now, since pcb-rnd
   // can import the footprints directly
-  private static String [] parseHKP(String HKPFilename) throws IOException {
+  private static String [] parseHKP(String HKPFilename, ConversionContext context) throws IOException {
 
-    hkpParser HLPp = new hkpParser(HKPFilename, verbose);
+    hkpParser HLPp = new hkpParser(HKPFilename, verbose, context);
     System.out.println("Recommend import of HKP / veribest footprints directly into pcb-rnd"); 
     return HLPp.convert(HKPFilename);
 
@@ -296,44 +497,44 @@ public class translate2coralEDA {
 
   // IBIS files provide pin mapping suitable for symbol generation
   // but do not provide package/footprint information
-  private static String [] parseIBIS(String IBISFilename) throws IOException {
+  private static String [] parseIBIS(String IBISFilename, ConversionContext context) throws IOException {
 
-    IBISParser IBISp = new IBISParser(IBISFilename, verbose);
+    IBISParser IBISp = new IBISParser(IBISFilename, verbose, context);
     return IBISp.convert(IBISFilename);
 
   } 
 
   // Kicad stores its symbols in library files, which exist in legacy format for now
-  private static String [] parseKicadLib(String KicadLibFilename) throws IOException {
+  private static String [] parseKicadLib(String KicadLibFilename, ConversionContext context) throws IOException {
 
-    KicadSymbolParser KSp = new KicadSymbolParser(KicadLibFilename, verbose);
+    KicadSymbolParser KSp = new KicadSymbolParser(KicadLibFilename, verbose, context);
     return KSp.convert(KicadLibFilename);
 
   } 
 
   // Kicad stores its modules (fp's) in module files, which exist in legacy and s-expr formats
-  private static String [] parseKicadModule(String KicadModuleFilename) throws IOException {
+  private static String [] parseKicadModule(String KicadModuleFilename, ConversionContext context) throws IOException {
 
-    KicadModuleParser KMp = new KicadModuleParser(KicadModuleFilename, verbose);
+    KicadModuleParser KMp = new KicadModuleParser(KicadModuleFilename, verbose, context);
     return KMp.convert(KicadModuleFilename);
 
   } 
 
   // LTSpice files contain components, and nets, which can be turned
   // into a gschem schematic file
-  private static String [] parseLTSpice(String LTSpiceFilename) throws IOException {
+  private static String [] parseLTSpice(String LTSpiceFilename, ConversionContext context) throws IOException {
 
-    LTSpiceParser LTSpicep = new LTSpiceParser(LTSpiceFilename, verbose);
+    LTSpiceParser LTSpicep = new LTSpiceParser(LTSpiceFilename, verbose, context);
     return LTSpicep.convert(LTSpiceFilename);
 
   } 
 
   // .symdef files provide pin mapping suitable for symbol generation
   // but do not provide package/footprint information
-  private static String [] parseSymdef(String symDefFilename) throws IOException {
+  private static String [] parseSymdef(String symDefFilename, ConversionContext context) throws IOException {
 
-    symdefParser sdp = new symdefParser(symDefFilename, verbose);
-    return symdefParser.convert(symDefFilename);
+    symdefParser sdp = new symdefParser(symDefFilename, verbose, context);
+    return sdp.convert(symDefFilename);
 
   } 
 
@@ -345,10 +546,10 @@ public class translate2coralEDA {
   // 5) +ve Y is down
   // qucs files contain components, and nets, which can be turned
   // into a gschem schematic file
-  private static String [] parseQUCS(String QUCSsch) throws IOException {
+  private static String [] parseQUCS(String QUCSsch, ConversionContext context) throws IOException {
 
-    QUCSParser QUCSp = new QUCSParser(QUCSsch, verbose);
-    return QUCSParser.convert(QUCSsch);
+    QUCSParser QUCSp = new QUCSParser(QUCSsch, verbose, context);
+    return QUCSp.convert(QUCSsch);
 
   } 
 
@@ -357,10 +558,24 @@ public class translate2coralEDA {
     System.out.println("usage:\n\n\tjava translate2coralEDA BSDLFILE.bsd\n\n"
                        + "options:\n\n"
                        + "\t\t-t\tonly output converted text"
-                       + " without further conversion\n\n"
+                       + " without further conversion\n"
+                       + "\t\t-n\tdecode BXL files with the original"
+                       + " Node based Huffman tree\n"
+                       + "\t\t-b\tbatch convert all convertible files"
+                       + " in the given directories or globs\n"
+                       + "\t\t-l\tmerge the given gerber layers, i.e. .gtl .gbl"
+                       + " .gto .gbo .gts .gbs, and .drl drill files,"
+                       + " into one footprint\n"
+                       + "\t\t-p\twrite a PNG preview next to each"
+                       + " converted footprint\n"
+                       + "\t\t-j N\tuse N threads for batch or gerber layer conversion\n\n"
                        + "example:\n\n"
                        + "\tjava BSDL2GEDA BSDLFILE.bsd"
-                       + " -t > BSDLFILE.txt\n");
+                       + " -t > BSDLFILE.txt\n"
+                       + "\tjava translate2coralEDA -b vendorLibs"
+                       + " \"drops/**.bxl\" -j 8\n"
+                       + "\tjava translate2coralEDA -l board.GTL board.GBL"
+                       + " board.GTO board.GTS board.DRL\n");
 
   }
 